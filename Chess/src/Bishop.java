@@ -9,10 +9,10 @@ public class Bishop extends Piece {
     private static final String NAME = "B";
 
     /** White Piece File Path */
-    private static final String WHITE_IMG_PATH = "src/resources/WhiteBishop.png";
+    static final String WHITE_IMG_PATH = "src/resources/WhiteBishop.png";
 
     /** Black Piece File Path */
-    private static final String BLACK_IMG_PATH = "src/resources/BlackBishop.png";
+    static final String BLACK_IMG_PATH = "src/resources/BlackBishop.png";
 
     /**
      * Bishop Constructor
@@ -23,7 +23,7 @@ public class Bishop extends Piece {
      * @throws IllegalArgumentException if row or col is out of bounds
      */
     public Bishop(int row, int col, boolean isWhitePiece){
-        super(row, col, isWhitePiece, NAME, WHITE_IMG_PATH, BLACK_IMG_PATH);
+        super(row, col, isWhitePiece, NAME);
     }
 
     public Bishop(Bishop other){
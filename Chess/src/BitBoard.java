@@ -0,0 +1,1369 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Bitboard Position
+ * Stores a chess position as one 64 bit long per piece type and side plus occupancy.
+ * Squares are indexed row * 8 + col, so square 0 is a8 (row 0, col 0) and square 63 is h1
+ *
+ * @author David Martinez
+ */
+public class BitBoard {
+
+    /** Number of squares on the board */
+    public static final int SQUARES = 64;
+
+    /** Pawn Piece Type */
+    public static final int PAWN = 0;
+
+    /** Knight Piece Type */
+    public static final int KNIGHT = 1;
+
+    /** Bishop Piece Type */
+    public static final int BISHOP = 2;
+
+    /** Rook Piece Type */
+    public static final int ROOK = 3;
+
+    /** Queen Piece Type */
+    public static final int QUEEN = 4;
+
+    /** King Piece Type */
+    public static final int KING = 5;
+
+    /** Added to a piece type to get the black piece code */
+    public static final int BLACK_OFFSET = 6;
+
+    /** Number of piece codes (6 types for each side) */
+    public static final int PIECE_CODES = 12;
+
+    /** Code for an empty square */
+    public static final int EMPTY = -1;
+
+    /** White side index */
+    public static final int WHITE = 0;
+
+    /** Black side index */
+    public static final int BLACK = 1;
+
+    /** White king side castling right */
+    public static final int WHITE_KING_SIDE = 1;
+
+    /** White queen side castling right */
+    public static final int WHITE_QUEEN_SIDE = 2;
+
+    /** Black king side castling right */
+    public static final int BLACK_KING_SIDE = 4;
+
+    /** Black queen side castling right */
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    /** No en passant square available */
+    public static final int NO_SQUARE = -1;
+
+    /** FEN for the starting position */
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /** FEN letters for each piece code */
+    private static final String FEN_PIECES = "PNBRQKpnbrqk";
+
+    /** Value of the king in static exchange evaluation */
+    private static final int SEE_KING_VALUE = 20000;
+
+    /** Most legal moves any position can have, the size a move array needs for one position */
+    public static final int MAX_MOVES = 256;
+
+    /** Direction Indexes For Rays, North is towards row 0 */
+    private static final int NORTH = 0;
+    private static final int SOUTH = 1;
+    private static final int EAST = 2;
+    private static final int WEST = 3;
+    private static final int NORTH_EAST = 4;
+    private static final int NORTH_WEST = 5;
+    private static final int SOUTH_EAST = 6;
+    private static final int SOUTH_WEST = 7;
+
+    /** Row movement for each direction */
+    private static final int[] DIRECTION_ROW = {-1, 1, 0, 0, -1, -1, 1, 1};
+
+    /** Column movement for each direction */
+    private static final int[] DIRECTION_COL = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    /** Knight attacks from each square */
+    static final long[] KNIGHT_ATTACKS = new long[SQUARES];
+
+    /** King attacks from each square */
+    static final long[] KING_ATTACKS = new long[SQUARES];
+
+    /** Pawn attacks from each square, indexed by side then square */
+    static final long[][] PAWN_ATTACKS = new long[2][SQUARES];
+
+    /** Empty board rays from each square, indexed by direction then square */
+    private static final long[][] RAYS = new long[8][SQUARES];
+
+    /** Squares strictly between two squares on the same row, column or diagonal */
+    private static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+
+    /** Whole row, column or diagonal through two squares, 0 if they are not aligned */
+    private static final long[][] LINE = new long[SQUARES][SQUARES];
+
+    /** Direction opposite each direction index */
+    private static final int[] OPPOSITE = {SOUTH, NORTH, WEST, EAST, SOUTH_WEST, SOUTH_EAST, NORTH_WEST, NORTH_EAST};
+
+    /** Castling rights kept when a piece moves from or to each square */
+    private static final int[] CASTLING_MASK = new int[SQUARES];
+
+    /** Starting square of the rook of each castling right, in right bit order KQkq */
+    private static final int[] CASTLING_ROOK_SQUARES = {63, 56, 7, 0};
+
+    /** Zobrist keys for each piece code on each square */
+    private static final long[][] PIECE_KEYS = new long[PIECE_CODES][SQUARES];
+
+    /** Zobrist keys for each combination of castling rights, no rights has no key */
+    private static final long[] CASTLING_KEYS = new long[16];
+
+    /** Zobrist keys for the file of the en passant square */
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+
+    /** Zobrist key used when black is to move */
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        int[] knightRow = {-2, -2, -1, -1, 1, 1, 2, 2};
+        int[] knightCol = {-1, 1, -2, 2, -2, 2, -1, 1};
+
+        for(int square = 0; square < SQUARES; square++){
+            int row = square / 8;
+            int col = square % 8;
+
+            for(int i = 0; i < knightRow.length; i++){
+                KNIGHT_ATTACKS[square] |= bit(row + knightRow[i], col + knightCol[i]);
+            }
+
+            for(int dir = 0; dir < DIRECTION_ROW.length; dir++){
+                KING_ATTACKS[square] |= bit(row + DIRECTION_ROW[dir], col + DIRECTION_COL[dir]);
+
+                for(int step = 1; step < 8; step++){
+                    RAYS[dir][square] |= bit(row + DIRECTION_ROW[dir] * step, col + DIRECTION_COL[dir] * step);
+                }
+            }
+
+            //white pawns move towards row 0, black pawns towards row 7
+            PAWN_ATTACKS[WHITE][square] = bit(row - 1, col - 1) | bit(row - 1, col + 1);
+            PAWN_ATTACKS[BLACK][square] = bit(row + 1, col - 1) | bit(row + 1, col + 1);
+        }
+
+        for(int square = 0; square < SQUARES; square++){
+            for(int dir = 0; dir < DIRECTION_ROW.length; dir++){
+                long between = 0;
+                long line = RAYS[dir][square] | RAYS[OPPOSITE[dir]][square] | 1L << square;
+
+                //walk outward, each square reached sees the squares walked so far as between
+                int row = square / 8 + DIRECTION_ROW[dir];
+                int col = square % 8 + DIRECTION_COL[dir];
+                while(bit(row, col) != 0){
+                    int target = square(row, col);
+                    BETWEEN[square][target] = between;
+                    LINE[square][target] = line;
+                    between |= 1L << target;
+                    row += DIRECTION_ROW[dir];
+                    col += DIRECTION_COL[dir];
+                }
+            }
+        }
+
+        //moving a king or rook off its starting square, or capturing a rook on it, loses the right
+        Arrays.fill(CASTLING_MASK, WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_MASK[0] &= ~BLACK_QUEEN_SIDE;
+        CASTLING_MASK[4] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_MASK[7] &= ~BLACK_KING_SIDE;
+        CASTLING_MASK[56] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_MASK[60] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_MASK[63] &= ~WHITE_KING_SIDE;
+
+        //fixed seed so keys are the same every run
+        long seed = 0x2545F4914F6CDD1DL;
+        for(int piece = 0; piece < PIECE_CODES; piece++){
+            for(int square = 0; square < SQUARES; square++){
+                seed = nextKey(seed);
+                PIECE_KEYS[piece][square] = seed;
+            }
+        }
+        for(int rights = 1; rights < CASTLING_KEYS.length; rights++){
+            seed = nextKey(seed);
+            CASTLING_KEYS[rights] = seed;
+        }
+        for(int col = 0; col < EN_PASSANT_KEYS.length; col++){
+            seed = nextKey(seed);
+            EN_PASSANT_KEYS[col] = seed;
+        }
+        BLACK_TO_MOVE_KEY = nextKey(seed);
+    }
+
+    /** One bitboard for each piece code */
+    private long[] pieceBoards = new long[PIECE_CODES];
+
+    /** Occupancy for each side */
+    private long[] sideBoards = new long[2];
+
+    /** Occupancy for both sides */
+    private long occupied;
+
+    /** Piece code on each square, used for constant time piece lookups */
+    private int[] squares = new int[SQUARES];
+
+    /** Side to move */
+    private boolean whiteToMove;
+
+    /** Castling rights bit flags */
+    private int castlingRights;
+
+    /** Square a pawn can move to when capturing en passant */
+    private int enPassantSquare;
+
+    /** Material balance after each capture in see, reused between calls */
+    private final int[] seeGain = new int[SQUARES];
+
+    /** Zobrist key of the position, updated with every change */
+    private long key;
+
+    /** Middlegame material and piece-square score from white's side, updated with every change */
+    private int mgScore;
+
+    /** Endgame material and piece-square score from white's side, updated with every change */
+    private int egScore;
+
+    /** Game phase from the pieces left on the board, updated with every change */
+    private int phase;
+
+    /** Empty Position Constructor */
+    public BitBoard(){
+        Arrays.fill(squares, EMPTY);
+        whiteToMove = true;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+    }
+
+    /**
+     * Copy Constructor
+     * @param other position to copy
+     */
+    public BitBoard(BitBoard other){
+        this.pieceBoards = other.pieceBoards.clone();
+        this.sideBoards = other.sideBoards.clone();
+        this.occupied = other.occupied;
+        this.squares = other.squares.clone();
+        this.whiteToMove = other.whiteToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.key = other.key;
+        this.mgScore = other.mgScore;
+        this.egScore = other.egScore;
+        this.phase = other.phase;
+    }
+
+    /**
+     * Creates a position from the placement, side to move, castling and en passant fields of a FEN.
+     * A castling right whose king or rook is not on its starting square is dropped
+     * @param fen FEN string
+     * @return position
+     * @throws IllegalArgumentException if the FEN is invalid
+     */
+    public static BitBoard fromFen(String fen){
+        if(fen == null){
+            throw new IllegalArgumentException("Invalid FEN");
+        }
+
+        String[] fields = fen.trim().split("\\s+");
+        if(fields.length < 4){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        BitBoard position = new BitBoard();
+        int row = 0;
+        int col = 0;
+
+        for(int i = 0; i < fields[0].length(); i++){
+            char c = fields[0].charAt(i);
+
+            if(c == '/'){
+                if(col != 8){
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                row++;
+                col = 0;
+            }
+            else if(c >= '1' && c <= '8'){
+                col += c - '0';
+            }
+            else {
+                int piece = FEN_PIECES.indexOf(c);
+                if(piece == -1 || row > 7 || col > 7){
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                position.putPiece(piece, square(row, col));
+                col++;
+            }
+
+            if(col > 8){
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+        }
+
+        if(row != 7 || col != 8){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        if(!"w".equals(fields[1]) && !"b".equals(fields[1])){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        position.whiteToMove = "w".equals(fields[1]);
+
+        if(!"-".equals(fields[2])){
+            for(int i = 0; i < fields[2].length(); i++){
+                int right = "KQkq".indexOf(fields[2].charAt(i));
+                if(right == -1){
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                position.castlingRights |= 1 << right;
+            }
+        }
+
+        //a right without its king and rook at home could never be used
+        position.castlingRights = position.supportedCastlingRights(position.castlingRights);
+
+        if(!"-".equals(fields[3])){
+            if(fields[3].length() != 2 || fields[3].charAt(0) < 'a' || fields[3].charAt(0) > 'h' ||
+                (fields[3].charAt(1) != '3' && fields[3].charAt(1) != '6')){
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+            position.enPassantSquare = square(8 - (fields[3].charAt(1) - '0'), fields[3].charAt(0) - 'a');
+        }
+
+        position.key = position.computeKey();
+        return position;
+    }
+
+    /**
+     * Keep only the castling rights whose king and rook are on their starting squares
+     * @param rights castling rights bit flags
+     * @return castling rights that can be used
+     */
+    private int supportedCastlingRights(int rights){
+        int supported = 0;
+
+        for(int right = 0; right < 4; right++){
+            if((rights & 1 << right) == 0) { continue; }
+
+            boolean isWhite = right < 2;
+            if(squares[isWhite ? 60 : 4] == pieceCode(KING, isWhite) &&
+                squares[CASTLING_ROOK_SQUARES[right]] == pieceCode(ROOK, isWhite)){
+                supported |= 1 << right;
+            }
+        }
+
+        return supported;
+    }
+
+    /**
+     * Write the position as a FEN
+     * @param halfmoveClock moves since the last capture or pawn move
+     * @param fullmoveNumber number of the move being played, starting at 1
+     * @return FEN string
+     */
+    public String toFen(int halfmoveClock, int fullmoveNumber){
+        StringBuilder fen = new StringBuilder(90);
+
+        for(int row = 0; row < 8; row++){
+            int empty = 0;
+
+            for(int col = 0; col < 8; col++){
+                int piece = squares[square(row, col)];
+
+                if(piece == EMPTY){
+                    empty++;
+                    continue;
+                }
+
+                if(empty > 0){
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(FEN_PIECES.charAt(piece));
+            }
+
+            if(empty > 0){
+                fen.append(empty);
+            }
+            if(row < 7){
+                fen.append('/');
+            }
+        }
+
+        fen.append(whiteToMove ? " w " : " b ");
+
+        if(castlingRights == 0){
+            fen.append('-');
+        }
+        for(int i = 0; i < 4; i++){
+            if((castlingRights & 1 << i) != 0){
+                fen.append("KQkq".charAt(i));
+            }
+        }
+
+        if(enPassantSquare == NO_SQUARE){
+            fen.append(" -");
+        }
+        else {
+            fen.append(' ').append((char) ('a' + enPassantSquare % 8)).append((char) ('8' - enPassantSquare / 8));
+        }
+
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+    }
+
+    /**
+     * Returns a single bit for the row and column, or 0 if off the board
+     * @param row row
+     * @param col col
+     * @return bitboard with the square set
+     */
+    private static long bit(int row, int col){
+        if(row < 0 || row > 7 || col < 0 || col > 7){
+            return 0L;
+        }
+        return 1L << (row * 8 + col);
+    }
+
+    /**
+     * Converts a row and column to a square index
+     * @param row row
+     * @param col col
+     * @return square index
+     */
+    public static int square(int row, int col){
+        return row * 8 + col;
+    }
+
+    /**
+     * Get the piece type (PAWN to KING) of a piece code
+     * @param piece piece code
+     * @return piece type
+     */
+    public static int typeOf(int piece){
+        return piece % BLACK_OFFSET;
+    }
+
+    /**
+     * Checks if a piece code is a white piece
+     * @param piece piece code
+     * @return true if white piece
+     */
+    public static boolean isWhite(int piece){
+        return piece < BLACK_OFFSET;
+    }
+
+    /**
+     * Get the piece code for a type and side
+     * @param type piece type
+     * @param isWhite piece side
+     * @return piece code
+     */
+    public static int pieceCode(int type, boolean isWhite){
+        return isWhite ? type : type + BLACK_OFFSET;
+    }
+
+    /**
+     * Adds a piece to an empty square
+     * @param piece piece code
+     * @param square square to put the piece on
+     */
+    public void putPiece(int piece, int square){
+        long b = 1L << square;
+        pieceBoards[piece] |= b;
+        sideBoards[isWhite(piece) ? WHITE : BLACK] |= b;
+        occupied |= b;
+        squares[square] = piece;
+        key ^= PIECE_KEYS[piece][square];
+        mgScore += Evaluation.MG[piece][square];
+        egScore += Evaluation.EG[piece][square];
+        phase += Evaluation.PHASE[piece];
+    }
+
+    /**
+     * Removes the piece on a square
+     * @param square square to clear
+     * @return piece code that was removed
+     */
+    public int removePiece(int square){
+        int piece = squares[square];
+        if(piece == EMPTY){
+            return EMPTY;
+        }
+
+        long b = ~(1L << square);
+        pieceBoards[piece] &= b;
+        sideBoards[isWhite(piece) ? WHITE : BLACK] &= b;
+        occupied &= b;
+        squares[square] = EMPTY;
+        key ^= PIECE_KEYS[piece][square];
+        mgScore -= Evaluation.MG[piece][square];
+        egScore -= Evaluation.EG[piece][square];
+        phase -= Evaluation.PHASE[piece];
+        return piece;
+    }
+
+    /**
+     * Moves a piece to an empty square
+     * @param from starting square
+     * @param to ending square
+     */
+    public void movePiece(int from, int to){
+        putPiece(removePiece(from), to);
+    }
+
+    /**
+     * Get the piece code on a square
+     * @param square square
+     * @return piece code or EMPTY
+     */
+    public int getPiece(int square){
+        return squares[square];
+    }
+
+    /**
+     * Checks if a square is empty
+     * @param square square
+     * @return true if no piece is on the square
+     */
+    public boolean isEmpty(int square){
+        return (occupied & (1L << square)) == 0;
+    }
+
+    /**
+     * Get the bitboard for a piece code
+     * @param piece piece code
+     * @return bitboard of all squares with that piece
+     */
+    public long getPieces(int piece){
+        return pieceBoards[piece];
+    }
+
+    /**
+     * Get the occupancy of one side
+     * @param isWhite side
+     * @return bitboard of all pieces on that side
+     */
+    public long getSidePieces(boolean isWhite){
+        return sideBoards[isWhite ? WHITE : BLACK];
+    }
+
+    /**
+     * Get the occupancy of both sides
+     * @return bitboard of all pieces
+     */
+    public long getOccupied(){
+        return occupied;
+    }
+
+    /**
+     * Returns the side to move
+     * @return true if white to move
+     */
+    public boolean isWhiteToMove(){
+        return whiteToMove;
+    }
+
+    /**
+     * Sets the side to move
+     * @param whiteToMove true if white to move
+     */
+    public void setWhiteToMove(boolean whiteToMove){
+        if(this.whiteToMove != whiteToMove){
+            key ^= BLACK_TO_MOVE_KEY;
+        }
+        this.whiteToMove = whiteToMove;
+    }
+
+    /**
+     * Get the castling rights bit flags
+     * @return castling rights
+     */
+    public int getCastlingRights(){
+        return castlingRights;
+    }
+
+    /**
+     * Set the castling rights bit flags
+     * @param castlingRights castling rights
+     */
+    public void setCastlingRights(int castlingRights){
+        key ^= CASTLING_KEYS[this.castlingRights] ^ CASTLING_KEYS[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * Get the en passant target square
+     * @return en passant square or NO_SQUARE
+     */
+    public int getEnPassantSquare(){
+        return enPassantSquare;
+    }
+
+    /**
+     * Set the en passant target square
+     * @param enPassantSquare en passant square or NO_SQUARE
+     */
+    public void setEnPassantSquare(int enPassantSquare){
+        key ^= enPassantKey(this.enPassantSquare) ^ enPassantKey(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    /**
+     * Get the Zobrist key of the position, covering piece placement, side to move,
+     * castling rights and the en passant square
+     * @return Zobrist key
+     */
+    public long getKey(){
+        return key;
+    }
+
+    /**
+     * Get the static evaluation, material and piece-square tables blended between
+     * middlegame and endgame by the pieces left. It is kept up to date as pieces move,
+     * so this does not look at the board
+     * @return evaluation in centipawns from white's side
+     */
+    public int getEvaluation(){
+        return Evaluation.taper(mgScore, egScore, phase);
+    }
+
+    /**
+     * Get the game phase
+     * @return phase, Evaluation.MAX_PHASE with all pieces on the board down to 0 with only pawns and kings
+     */
+    public int getPhase(){
+        return phase;
+    }
+
+    /**
+     * Computes the Zobrist key from scratch. The key is kept up to date as the position
+     * changes, so this is only needed after setting fields directly
+     * @return Zobrist key
+     */
+    public long computeKey(){
+        long rtn = CASTLING_KEYS[castlingRights] ^ enPassantKey(enPassantSquare);
+
+        if(!whiteToMove){
+            rtn ^= BLACK_TO_MOVE_KEY;
+        }
+
+        for(int square = 0; square < SQUARES; square++){
+            if(squares[square] != EMPTY){
+                rtn ^= PIECE_KEYS[squares[square]][square];
+            }
+        }
+
+        return rtn;
+    }
+
+    /**
+     * Get the Zobrist key of an en passant square
+     * @param square en passant square or NO_SQUARE
+     * @return key of the square's file, 0 if there is no en passant square
+     */
+    private static long enPassantKey(int square){
+        return square == NO_SQUARE ? 0 : EN_PASSANT_KEYS[square % 8];
+    }
+
+    /**
+     * Next value of a SplitMix64 sequence, used to fill the Zobrist keys
+     * @param seed previous value
+     * @return next value
+     */
+    private static long nextKey(long seed){
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Get the square of a king
+     * @param isWhite king side
+     * @return king square, or NO_SQUARE if the king is not on the board
+     */
+    public int getKingSquare(boolean isWhite){
+        long king = pieceBoards[pieceCode(KING, isWhite)];
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Get the piece type of a promotion name
+     * @param promotion promotion name ("Q", "R", "B" or "N"), null if not a promotion
+     * @return piece type, or EMPTY if not a promotion
+     */
+    public static int promotionType(String promotion){
+        if(promotion == null){
+            return EMPTY;
+        }
+
+        switch(promotion){
+            case "Q":
+                return QUEEN;
+            case "R":
+                return ROOK;
+            case "B":
+                return BISHOP;
+            case "N":
+                return KNIGHT;
+            default:
+                throw new IllegalArgumentException("Invalid promotion.");
+        }
+    }
+
+    /**
+     * Makes a move and returns what is needed to unmake it, packed into a long:
+     * bits 0-3 captured piece code + 1, bits 4-7 castling rights, bits 8-14 en passant square + 1
+     * @param from starting square
+     * @param to ending square
+     * @param promotion piece type to promote to, EMPTY if not a promotion
+     * @return undo information for unmakeMove
+     */
+    public long makeMove(int from, int to, int promotion){
+        int piece = squares[from];
+        boolean isWhite = isWhite(piece);
+        int type = typeOf(piece);
+
+        long undo = castlingRights << 4 | (long) (enPassantSquare + 1) << 8;
+
+        //en passant captures the pawn behind the ending square
+        int captureSquare = to;
+        if(type == PAWN && to == enPassantSquare){
+            captureSquare = isWhite ? to + 8 : to - 8;
+        }
+
+        int captured = removePiece(captureSquare);
+        undo |= captured + 1;
+
+        removePiece(from);
+        putPiece(promotion == EMPTY ? piece : pieceCode(promotion, isWhite), to);
+
+        //castling also moves the rook
+        if(type == KING && Math.abs(to - from) == 2){
+            if(to > from){
+                movePiece(from + 3, from + 1);
+            }
+            else {
+                movePiece(from - 4, from - 1);
+            }
+        }
+
+        setCastlingRights(castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to]);
+        setEnPassantSquare(type == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : NO_SQUARE);
+        setWhiteToMove(!whiteToMove);
+
+        return undo;
+    }
+
+    /**
+     * Unmakes a move made with makeMove
+     * @param from starting square of the move
+     * @param to ending square of the move
+     * @param promotion piece type the move promoted to, EMPTY if not a promotion
+     * @param undo value returned by makeMove
+     */
+    public void unmakeMove(int from, int to, int promotion, long undo){
+        setWhiteToMove(!whiteToMove);
+        setCastlingRights((int) (undo >>> 4) & 0xF);
+        setEnPassantSquare((int) (undo >>> 8 & 0x7F) - 1);
+
+        int piece = removePiece(to);
+        boolean isWhite = isWhite(piece);
+        putPiece(promotion == EMPTY ? piece : pieceCode(PAWN, isWhite), from);
+
+        if(typeOf(piece) == KING && Math.abs(to - from) == 2){
+            if(to > from){
+                movePiece(from + 1, from + 3);
+            }
+            else {
+                movePiece(from - 1, from - 4);
+            }
+        }
+
+        int captured = (int) (undo & 0xF) - 1;
+        if(captured != EMPTY){
+            int captureSquare = to;
+            if(typeOf(piece) == PAWN && to == enPassantSquare){
+                captureSquare = isWhite ? to + 8 : to - 8;
+            }
+            putPiece(captured, captureSquare);
+        }
+    }
+
+    /**
+     * Attacks along one ray, stopping at (and including) the first blocker
+     * @param dir direction index
+     * @param square starting square
+     * @param occupancy blocking pieces
+     * @return attacked squares
+     */
+    private static long rayAttacks(int dir, int square, long occupancy){
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupancy;
+
+        if(blockers != 0){
+            //south and east rays increase the square index, the rest decrease it
+            int blocker = (dir == SOUTH || dir == EAST || dir == SOUTH_EAST || dir == SOUTH_WEST) ?
+                Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][blocker];
+        }
+
+        return attacks;
+    }
+
+    /**
+     * Rook attacks from a square
+     * @param square rook square
+     * @param occupancy blocking pieces
+     * @return attacked squares
+     */
+    public static long rookAttacks(int square, long occupancy){
+        return rayAttacks(NORTH, square, occupancy) | rayAttacks(SOUTH, square, occupancy) |
+            rayAttacks(EAST, square, occupancy) | rayAttacks(WEST, square, occupancy);
+    }
+
+    /**
+     * Bishop attacks from a square
+     * @param square bishop square
+     * @param occupancy blocking pieces
+     * @return attacked squares
+     */
+    public static long bishopAttacks(int square, long occupancy){
+        return rayAttacks(NORTH_EAST, square, occupancy) | rayAttacks(NORTH_WEST, square, occupancy) |
+            rayAttacks(SOUTH_EAST, square, occupancy) | rayAttacks(SOUTH_WEST, square, occupancy);
+    }
+
+    /**
+     * Checks if a square is attacked by a side
+     * @param square square to check
+     * @param byWhite attacking side
+     * @return true if any piece of the attacking side attacks the square
+     */
+    public boolean isSquareAttacked(int square, boolean byWhite){
+        return isSquareAttacked(square, byWhite, occupied, -1L);
+    }
+
+    /**
+     * Checks if a square is attacked by a side with a different occupancy, used to test
+     * a move without making it
+     * @param square square to check
+     * @param byWhite attacking side
+     * @param occupancy blocking pieces
+     * @param attackerMask only attackers on these squares are counted
+     * @return true if any piece of the attacking side attacks the square
+     */
+    private boolean isSquareAttacked(int square, boolean byWhite, long occupancy, long attackerMask){
+        int offset = byWhite ? 0 : BLACK_OFFSET;
+
+        //a pawn attacks the square if a pawn of the other side on the square would attack it
+        if((PAWN_ATTACKS[byWhite ? BLACK : WHITE][square] & pieceBoards[offset + PAWN] & attackerMask) != 0){
+            return true;
+        }
+        if((KNIGHT_ATTACKS[square] & pieceBoards[offset + KNIGHT] & attackerMask) != 0){
+            return true;
+        }
+        if((KING_ATTACKS[square] & pieceBoards[offset + KING] & attackerMask) != 0){
+            return true;
+        }
+
+        long queens = pieceBoards[offset + QUEEN];
+        long diagonal = (pieceBoards[offset + BISHOP] | queens) & attackerMask;
+        if(diagonal != 0 && (bishopAttacks(square, occupancy) & diagonal) != 0){
+            return true;
+        }
+
+        long straight = (pieceBoards[offset + ROOK] | queens) & attackerMask;
+        return straight != 0 && (rookAttacks(square, occupancy) & straight) != 0;
+    }
+
+    /**
+     * Checks if a king is in check
+     * @param isWhite king side
+     * @return true if the king is attacked
+     */
+    public boolean isInCheck(boolean isWhite){
+        int king = getKingSquare(isWhite);
+        return king != NO_SQUARE && isSquareAttacked(king, !isWhite);
+    }
+
+    /**
+     * Static exchange evaluation: plays out every capture on the move's ending square,
+     * each side taking with its least valuable attacker and stopping when recapturing
+     * would lose material, without making any moves. Pieces behind a capturer join in
+     * as it leaves the line. Pins are not considered
+     * @param move packed move
+     * @return material the moving side wins in centipawns, negative if it loses material
+     */
+    public int see(int move){
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = squares[from];
+        boolean isWhite = isWhite(piece);
+        long occupancy = occupied ^ (1L << from);
+
+        int captured = squares[to] == EMPTY ? EMPTY : typeOf(squares[to]);
+        if(typeOf(piece) == PAWN && to == enPassantSquare){
+            captured = PAWN;
+            occupancy ^= 1L << (isWhite ? to + 8 : to - 8);
+        }
+
+        //value of the piece standing on the square, which the next capture wins
+        int onSquare = seeValue(typeOf(piece));
+        seeGain[0] = captured == EMPTY ? 0 : seeValue(captured);
+
+        int promotion = Move.promotion(move);
+        if(promotion != EMPTY){
+            onSquare = seeValue(promotion);
+            seeGain[0] += onSquare - seeValue(PAWN);
+        }
+
+        long attackers = (attackersOf(to, true, occupancy) | attackersOf(to, false, occupancy)) & occupancy;
+        boolean side = !isWhite;
+        int depth = 0;
+
+        while(true){
+            long sideAttackers = attackers & sideBoards[side ? WHITE : BLACK] & occupancy;
+            if(sideAttackers == 0){
+                break;
+            }
+
+            //least valuable attacker
+            int offset = side ? 0 : BLACK_OFFSET;
+            int type = PAWN;
+            long attacker = 0;
+            for(; type <= KING; type++){
+                attacker = sideAttackers & pieceBoards[offset + type];
+                if(attacker != 0){
+                    break;
+                }
+            }
+
+            //the king can only take last
+            if(type == KING && (attackers & sideBoards[side ? BLACK : WHITE] & occupancy) != 0){
+                break;
+            }
+
+            depth++;
+            seeGain[depth] = onSquare - seeGain[depth - 1];
+            onSquare = seeValue(type);
+
+            occupancy ^= Long.lowestOneBit(attacker);
+            long diagonal = pieceBoards[BISHOP] | pieceBoards[QUEEN] | pieceBoards[BISHOP + BLACK_OFFSET] |
+                pieceBoards[QUEEN + BLACK_OFFSET];
+            long straight = pieceBoards[ROOK] | pieceBoards[QUEEN] | pieceBoards[ROOK + BLACK_OFFSET] |
+                pieceBoards[QUEEN + BLACK_OFFSET];
+            attackers |= (bishopAttacks(to, occupancy) & diagonal) | (rookAttacks(to, occupancy) & straight);
+            attackers &= occupancy;
+            side = !side;
+        }
+
+        //each side can stop capturing when going on would lose more
+        while(depth > 0){
+            seeGain[depth - 1] = -Math.max(-seeGain[depth - 1], seeGain[depth]);
+            depth--;
+        }
+
+        return seeGain[0];
+    }
+
+    /**
+     * Value of a piece type for exchanges
+     * @param type piece type
+     * @return value in centipawns, the king is worth more than everything else
+     */
+    private static int seeValue(int type){
+        return type == KING ? SEE_KING_VALUE : Evaluation.value(type);
+    }
+
+    /**
+     * Checks if moving the piece on from to the square to leaves its own king safe
+     * @param from starting square
+     * @param to ending square
+     * @return true if the king is not attacked after the move
+     */
+    public boolean leavesKingSafe(int from, int to){
+        int piece = squares[from];
+        boolean isWhite = isWhite(piece);
+        long toBit = 1L << to;
+        long occupancy = (occupied ^ (1L << from)) | toBit;
+        long attackerMask = ~toBit;
+
+        //en passant removes a pawn that is not on the ending square
+        if(typeOf(piece) == PAWN && to == enPassantSquare){
+            long captured = 1L << (isWhite ? to + 8 : to - 8);
+            occupancy &= ~captured;
+            attackerMask &= ~captured;
+        }
+
+        int king = typeOf(piece) == KING ? to : getKingSquare(isWhite);
+        return king == NO_SQUARE || !isSquareAttacked(king, !isWhite, occupancy, attackerMask);
+    }
+
+    /**
+     * Generates all legal moves for the side to move as Move objects, for the GUI and
+     * file reading. The search uses the packed move version
+     * @return list of legal moves
+     */
+    public ArrayList<Move> generateMoves(){
+        return generateMoves(whiteToMove);
+    }
+
+    /**
+     * Generates all legal moves for a side as Move objects, used to ask whether the
+     * side that is not to move would have a move
+     * @param isWhite side to generate moves for
+     * @return list of legal moves
+     */
+    public ArrayList<Move> generateMoves(boolean isWhite){
+        int[] packed = new int[MAX_MOVES];
+        int count = generateMoves(isWhite, packed, 0);
+
+        ArrayList<Move> moves = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            moves.add(new Move(packed[i]));
+        }
+        return moves;
+    }
+
+    /**
+     * Generates all legal moves for the side to move as packed moves
+     * @param moves array to write the moves to
+     * @param start index of the first move to write
+     * @return index after the last move written
+     */
+    public int generateMoves(int[] moves, int start){
+        return generateMoves(whiteToMove, moves, start);
+    }
+
+    /**
+     * Generates all legal moves for a side as packed moves. Checking pieces and pinned
+     * pieces are found once, then only legal moves are made: when in check only moves that
+     * capture or block the checker, pinned pieces only along their pin, and king moves
+     * only to squares the other side does not attack
+     * @param isWhite side to generate moves for
+     * @param moves array to write the moves to, with room for MAX_MOVES after start
+     * @param start index of the first move to write
+     * @return index after the last move written
+     */
+    public int generateMoves(boolean isWhite, int[] moves, int start){
+        return generateMoves(isWhite, moves, start, false);
+    }
+
+    /**
+     * Generates the legal captures and promotions for the side to move as packed moves,
+     * for searching until the position is quiet
+     * @param moves array to write the moves to, with room for MAX_MOVES after start
+     * @param start index of the first move to write
+     * @return index after the last move written
+     */
+    public int generateCaptures(int[] moves, int start){
+        return generateMoves(whiteToMove, moves, start, true);
+    }
+
+    /**
+     * Generates legal moves for a side as packed moves
+     * @param isWhite side to generate moves for
+     * @param moves array to write the moves to, with room for MAX_MOVES after start
+     * @param start index of the first move to write
+     * @param capturesOnly true to only generate captures and promotions
+     * @return index after the last move written
+     */
+    private int generateMoves(boolean isWhite, int[] moves, int start, boolean capturesOnly){
+        int count = start;
+        int offset = isWhite ? 0 : BLACK_OFFSET;
+        long own = sideBoards[isWhite ? WHITE : BLACK];
+        long enemy = sideBoards[isWhite ? BLACK : WHITE];
+
+        //squares pieces other than pawns may move to
+        long targetMask = capturesOnly ? enemy : ~own;
+
+        int king = getKingSquare(isWhite);
+        long checkers = 0;
+        long pinned = 0;
+        long checkMask = -1L;
+
+        if(king != NO_SQUARE){
+            checkers = attackersOf(king, !isWhite, occupied);
+            pinned = pinnedPieces(king, isWhite);
+
+            //with two checkers only the king can move
+            if(Long.bitCount(checkers) > 1){
+                checkMask = 0;
+            }
+            else if(checkers != 0){
+                checkMask = checkers | BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+            }
+
+            long kingTargets = KING_ATTACKS[king] & targetMask & ~attackMap(!isWhite, occupied & ~(1L << king));
+            count = addMoves(moves, count, king, kingTargets, enemy);
+
+            if(checkers == 0 && !capturesOnly){
+                count = addCastles(moves, count, isWhite);
+            }
+
+            if(checkMask == 0){
+                return count;
+            }
+        }
+
+        //only the side the en passant square is in front of can capture on it
+        int enPassant = enPassantSquare != NO_SQUARE && enPassantSquare / 8 == (isWhite ? 2 : 5) ?
+            enPassantSquare : NO_SQUARE;
+
+        //pawns
+        long pawns = pieceBoards[offset + PAWN];
+        while(pawns != 0){
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long allowed = checkMask & ((pinned & 1L << from) != 0 ? LINE[king][from] : -1L);
+            long targets = 0;
+
+            int forward = isWhite ? from - 8 : from + 8;
+            boolean promotes = forward < 8 || forward >= 56;
+            if(forward >= 0 && forward < SQUARES && isEmpty(forward) && (!capturesOnly || promotes)){
+                targets |= 1L << forward;
+
+                int startRow = isWhite ? 6 : 1;
+                int doubleForward = isWhite ? from - 16 : from + 16;
+                if(from / 8 == startRow && isEmpty(doubleForward) && !capturesOnly){
+                    targets |= 1L << doubleForward;
+                }
+            }
+
+            targets = (targets | PAWN_ATTACKS[isWhite ? WHITE : BLACK][from] & enemy) & allowed;
+            while(targets != 0){
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                count = addPawnMove(moves, count, from, to, (enemy & 1L << to) != 0 ? Move.CAPTURE : 0);
+            }
+
+            //en passant removes two pieces from a row, so it is checked by making it
+            if(enPassant != NO_SQUARE && (PAWN_ATTACKS[isWhite ? WHITE : BLACK][from] & 1L << enPassant) != 0
+                    && leavesKingSafe(from, enPassant)){
+                moves[count++] = Move.encode(from, enPassant, EMPTY, Move.CAPTURE | Move.EN_PASSANT);
+            }
+        }
+
+        //knights, bishops, rooks and queens
+        for(int type = KNIGHT; type <= QUEEN; type++){
+            long board = pieceBoards[offset + type];
+
+            while(board != 0){
+                int from = Long.numberOfTrailingZeros(board);
+                board &= board - 1;
+
+                long targets = attacks(type, from, occupied) & targetMask & checkMask;
+                if((pinned & 1L << from) != 0){
+                    targets &= LINE[king][from];
+                }
+
+                count = addMoves(moves, count, from, targets, enemy);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Makes a packed move and returns what is needed to unmake it
+     * @param move packed move
+     * @return undo information for unmakeMove
+     */
+    public long makeMove(int move){
+        return makeMove(Move.from(move), Move.to(move), Move.promotion(move));
+    }
+
+    /**
+     * Unmakes a packed move made with makeMove
+     * @param move packed move
+     * @param undo value returned by makeMove
+     */
+    public void unmakeMove(int move, long undo){
+        unmakeMove(Move.from(move), Move.to(move), Move.promotion(move), undo);
+    }
+
+    /**
+     * Finds the pieces of a side attacking a square
+     * @param square square to check
+     * @param byWhite attacking side
+     * @param occupancy blocking pieces
+     * @return bitboard of attacking pieces
+     */
+    public long attackersOf(int square, boolean byWhite, long occupancy){
+        int offset = byWhite ? 0 : BLACK_OFFSET;
+        long queens = pieceBoards[offset + QUEEN];
+
+        return (PAWN_ATTACKS[byWhite ? BLACK : WHITE][square] & pieceBoards[offset + PAWN]) |
+            (KNIGHT_ATTACKS[square] & pieceBoards[offset + KNIGHT]) |
+            (KING_ATTACKS[square] & pieceBoards[offset + KING]) |
+            (bishopAttacks(square, occupancy) & (pieceBoards[offset + BISHOP] | queens)) |
+            (rookAttacks(square, occupancy) & (pieceBoards[offset + ROOK] | queens));
+    }
+
+    /**
+     * Finds every square a side attacks
+     * @param byWhite attacking side
+     * @param occupancy blocking pieces
+     * @return bitboard of attacked squares
+     */
+    public long attackMap(boolean byWhite, long occupancy){
+        int offset = byWhite ? 0 : BLACK_OFFSET;
+        long map = 0;
+
+        long pawns = pieceBoards[offset + PAWN];
+        while(pawns != 0){
+            map |= PAWN_ATTACKS[byWhite ? WHITE : BLACK][Long.numberOfTrailingZeros(pawns)];
+            pawns &= pawns - 1;
+        }
+
+        for(int type = KNIGHT; type <= KING; type++){
+            long board = pieceBoards[offset + type];
+            while(board != 0){
+                map |= attacks(type, Long.numberOfTrailingZeros(board), occupancy);
+                board &= board - 1;
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Finds the pieces of a side that are pinned to their king
+     * @param king king square
+     * @param isWhite side of the king
+     * @return bitboard of pinned pieces
+     */
+    public long pinnedPieces(int king, boolean isWhite){
+        int offset = isWhite ? BLACK_OFFSET : 0;
+        long own = sideBoards[isWhite ? WHITE : BLACK];
+        long enemy = sideBoards[isWhite ? BLACK : WHITE];
+        long queens = pieceBoards[offset + QUEEN];
+
+        //enemy sliders that would attack the king if only enemy pieces blocked
+        long snipers = (rookAttacks(king, enemy) & (pieceBoards[offset + ROOK] | queens)) |
+            (bishopAttacks(king, enemy) & (pieceBoards[offset + BISHOP] | queens));
+        long pinned = 0;
+
+        while(snipers != 0){
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = BETWEEN[king][sniper] & occupied;
+            if(Long.bitCount(blockers) == 1 && (blockers & own) != 0){
+                pinned |= blockers;
+            }
+        }
+
+        return pinned;
+    }
+
+    /**
+     * Attacks for a non pawn piece type
+     * @param type piece type
+     * @param square piece square
+     * @param occupancy blocking pieces
+     * @return attacked squares
+     */
+    public static long attacks(int type, int square, long occupancy){
+        switch(type){
+            case KNIGHT:
+                return KNIGHT_ATTACKS[square];
+            case BISHOP:
+                return bishopAttacks(square, occupancy);
+            case ROOK:
+                return rookAttacks(square, occupancy);
+            case QUEEN:
+                return bishopAttacks(square, occupancy) | rookAttacks(square, occupancy);
+            case KING:
+                return KING_ATTACKS[square];
+            default:
+                throw new IllegalArgumentException("Invalid piece type");
+        }
+    }
+
+    /**
+     * Adds a move from a square to each target square
+     * @param moves move array
+     * @param count index to write the next move to
+     * @param from starting square
+     * @param targets ending squares
+     * @param enemy squares holding pieces of the other side, moving there is a capture
+     * @return index after the last move written
+     */
+    private static int addMoves(int[] moves, int count, int from, long targets, long enemy){
+        while(targets != 0){
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = Move.encode(from, to, EMPTY, (enemy & 1L << to) != 0 ? Move.CAPTURE : 0);
+        }
+        return count;
+    }
+
+    /**
+     * Adds a pawn move, adding each promotion when the pawn reaches the last row
+     * @param moves move array
+     * @param count index to write the next move to
+     * @param from starting square
+     * @param to ending square
+     * @param flags move flags
+     * @return index after the last move written
+     */
+    private static int addPawnMove(int[] moves, int count, int from, int to, int flags){
+        if(to < 8 || to >= 56){
+            for(int promotion = QUEEN; promotion >= KNIGHT; promotion--){
+                moves[count++] = Move.encode(from, to, promotion, flags);
+            }
+            return count;
+        }
+
+        moves[count++] = Move.encode(from, to, EMPTY, flags);
+        return count;
+    }
+
+    /**
+     * Adds castling moves, the king can not castle out of, through, or into check
+     * @param moves move array
+     * @param count index to write the next move to
+     * @param isWhite side to move
+     * @return index after the last move written
+     */
+    private int addCastles(int[] moves, int count, boolean isWhite){
+        int king = isWhite ? 60 : 4;
+        int kingSide = isWhite ? WHITE_KING_SIDE : BLACK_KING_SIDE;
+        int queenSide = isWhite ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE;
+
+        if((castlingRights & (kingSide | queenSide)) == 0 || squares[king] != pieceCode(KING, isWhite)){
+            return count;
+        }
+
+        if(isSquareAttacked(king, !isWhite)){
+            return count;
+        }
+
+        //the rook is checked too, in case the rights were set without one in the corner
+        int rook = pieceCode(ROOK, isWhite);
+
+        if((castlingRights & kingSide) != 0 && squares[king + 3] == rook && isEmpty(king + 1) && isEmpty(king + 2) &&
+            !isSquareAttacked(king + 1, !isWhite) && !isSquareAttacked(king + 2, !isWhite)){
+            moves[count++] = Move.encode(king, king + 2, EMPTY, Move.CASTLE);
+        }
+
+        if((castlingRights & queenSide) != 0 && squares[king - 4] == rook && isEmpty(king - 1) && isEmpty(king - 2) && isEmpty(king - 3) &&
+            !isSquareAttacked(king - 1, !isWhite) && !isSquareAttacked(king - 2, !isWhite)){
+            moves[count++] = Move.encode(king, king - 2, EMPTY, Move.CASTLE);
+        }
+
+        return count;
+    }
+}
@@ -1,6 +1,8 @@
 import java.awt.Image;
 import java.util.*;
 
+import javax.swing.ImageIcon;
+
 /**
  * Chess Board Class Object
  * 
@@ -11,33 +13,42 @@ public class ChessBoard{
     /** Chess Board  Size */
     public static final int ARRAY_SIZE = 8;
 
-    private static final String KING_SIDE_CASTLE_0 = "0-0";
-
-    private static final String KING_SIDE_CASTLE_O = "O-O";
-
-    private static final String QUEEN_SIDE_CASTLE_O = "O-O-O";
-
-    private static final String QUEEN_SIDE_CASTLE_0 = "0-0-0";
-
     public static final String WHITE_WIN = "1-0";
 
     public static final String BLACK_WIN = "0-1";
 
     public static final String STALEMATE = "1/2-1/2";
 
-    private enum Ambiguous { USE_ROW, USE_COL };
     
     /** 2D array of Chess pieces */
     private Piece[][] pieces = new Piece[ARRAY_SIZE][ARRAY_SIZE];
 
+    /** Bitboard representation of pieces, kept in sync with the pieces array */
+    private BitBoard position;
+
     /** 2D array of available moves */
     private boolean[][] validMoves = new boolean[ARRAY_SIZE][ARRAY_SIZE];
 
+    /** Legal moves of the side to move in the position with legalKey, made when first needed */
+    private int[] legalMoves;
+
+    /** Number of moves in legalMoves, -1 before they are generated */
+    private int legalCount = -1;
+
+    /** Zobrist key of the position legalMoves was generated for */
+    private long legalKey;
+
     /** Singleton Instance */
     private static ChessBoard instance;
 
-    /** ChessBot */
-    private ChessBot chessBot;
+    /** ChessBot, volatile as the GUI searches on a background thread and stops it from the event thread */
+    private volatile ChessBot chessBot;
+
+    /** Longest the bot thinks about one move in milliseconds when playing by level */
+    private static final long BOT_MOVE_MILLIS = 5000;
+
+    /** Number of threads the bot searches on */
+    private int searchThreads = Runtime.getRuntime().availableProcessors();
 
 
 
@@ -53,18 +64,6 @@ public class ChessBoard{
     /** 4 Grid Position */
     private static final int FOUR_POS = 4;
 
-    /** Queen Points Value */
-    private static final int QUEEN_VALUE = 9;
-
-    /** Rook Point Value */
-    private static final int ROOK_VALUE = 5;
-
-    /** Bishop and Knight Points Value */
-    private static final int BISHOP_KNIGHT_VALUE = 3;
-
-    /** Pawn Points Value */
-    private static final int PAWN_VALUE = 1;
-
     /** Is White King Under Check */
     private boolean isWhiteCheck;
 
@@ -91,7 +90,8 @@ public class ChessBoard{
 
     private int simTurns;
 
-    private static ArrayList<ChessBoard[]> chessBoardList;
+    /** Moves of the game with periodic board snapshots, for going back to earlier boards */
+    private static GameHistory history;
 
     private static ArrayList<String[]> movesList;
 
@@ -100,6 +100,12 @@ public class ChessBoard{
     /** Chess Round */
     private static int chessRound;
 
+    /** Moves since the last capture or pawn move, for the fifty move rule */
+    private int halfmoveClock;
+
+    /** Number of the move being played, starting at 1 and counted up after each black move */
+    private int fullmoveNumber;
+
     /** ChessBoard Constructor */
     private ChessBoard(){
 
@@ -107,6 +113,15 @@ public class ChessBoard{
         setBoard();
     }
 
+    /**
+     * ChessBoard Constructor for a FEN position
+     * @param fen FEN string
+     * @throws IllegalArgumentException if the FEN is invalid
+     */
+    private ChessBoard(String fen){
+        setFen(fen);
+    }
+
     public ChessBoard(ChessBoard other){
         this.pieces = new Piece[ARRAY_SIZE][ARRAY_SIZE];
 
@@ -160,6 +175,7 @@ public class ChessBoard{
         this.simTurns = other.simTurns;
         this.validMoves = other.validMoves;
         this.chessBot = other.chessBot;
+        this.searchThreads = other.searchThreads;
 
 
 //        this.whiteRooks[0] = new Rook((Rook)other.whiteRooks[0]);
@@ -172,6 +188,9 @@ public class ChessBoard{
 //        this.blackKing = new King((King)other.blackKing);
 
         this.isWhiteTurn = other.isWhiteTurn;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.position = new BitBoard(other.position);
     }
 
     public static ChessBoard getInstance(){
@@ -185,6 +204,61 @@ public class ChessBoard{
         return instance.isWhiteTurn;
     }
 
+    /**
+     * Return the bitboard position of this board
+     * @return position
+     */
+    public BitBoard getPosition(){
+        return position;
+    }
+
+    /**
+     * Return the Zobrist key of this board. It covers piece placement, side to move,
+     * castling rights and the en passant square, and is updated with every move
+     * @return Zobrist key
+     */
+    public long getZobristKey(){
+        return position.getKey();
+    }
+
+    /**
+     * Write this board as a FEN
+     * @return FEN string
+     */
+    public String toFen(){
+        return position.toFen(halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Getter for halfmoveClock
+     * @return moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock(){
+        return halfmoveClock;
+    }
+
+    /**
+     * Getter for fullmoveNumber
+     * @return number of the move being played, starting at 1
+     */
+    public int getFullmoveNumber(){
+        return fullmoveNumber;
+    }
+
+    /**
+     * Set the number of threads the bot searches on, the bot is recreated on its next move
+     * @param threads number of threads
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public void setSearchThreads(int threads){
+        if(threads < 1){
+            throw new IllegalArgumentException("Bot needs at least 1 thread");
+        }
+
+        this.searchThreads = threads;
+        this.chessBot = null;
+    }
+
 //    private static void setInstance(ChessBoard other){
 //        instance = other;
 //    }
@@ -193,16 +267,15 @@ public class ChessBoard{
         if(chessRound == 1 && instance.isWhiteTurn) { return; }
         if(row == chessRound - 1 && (instance.isWhiteTurn ? col == 1 : col == 0)) { return; }
 
-        ChessBoard board = null;
-        try {
-            board = chessBoardList.get(row)[col];
-        } catch(IndexOutOfBoundsException e) {
-            return;
-        }
+        //board after this many moves
+        int plies = row * 2 + col + 1;
+        if(row < 0 || col < 0 || col > 1 || plies > history.size()) { return; }
+
+        ChessBoard board = history.boardAt(plies);
 
-        if(board == null) { return; }
-        instance = new ChessBoard(board);
+        instance = board;
         instance.isWhiteTurn = col % 2 != 0;
+        instance.position.setWhiteToMove(instance.isWhiteTurn);
         chessRound = row + (instance.isWhiteTurn ? 2 : 1);
         hasChangedInstance = true;
     }
@@ -212,16 +285,28 @@ public class ChessBoard{
         return instance;
     }
 
+    /**
+     * Create a board from a FEN, set up square by square without replaying any moves.
+     * The board is separate from the game being played, so its moves are not recorded
+     * @param fen FEN string, the halfmove and fullmove fields may be left off
+     * @return board
+     * @throws IllegalArgumentException if the FEN is invalid
+     */
+    public static ChessBoard fromFen(String fen){
+        return new ChessBoard(fen);
+    }
+
     /** Sets the chess board up for play */
     private void setBoard(){
 
         chessRound = 1;
         simTurns = 0;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
         isWhiteTurn = true;
         isReadingFile = false;
         isMinimax = false;
         movesList = new ArrayList<>();
-        chessBoardList = new ArrayList<>();
         hasChangedInstance = false;
 
         //sets all values in validMoves to false
@@ -270,6 +355,246 @@ public class ChessBoard{
         //Sets Queens
         pieces[0][3] = new Queen(0, 3, false);
         pieces[SEVEN_POS][3] = new Queen(SEVEN_POS, 3, true);
+
+        rebuildPosition();
+
+        history = new GameHistory(this);
+    }
+
+    /** Rebuilds the bitboard position from the pieces array */
+    private void rebuildPosition(){
+        position = new BitBoard();
+
+        for(int row = 0; row < ARRAY_SIZE; row++){
+            for(int col = 0; col < ARRAY_SIZE; col++){
+                if(pieces[row][col] != null){
+                    position.putPiece(toPieceCode(pieces[row][col]), BitBoard.square(row, col));
+                }
+            }
+        }
+
+        position.setWhiteToMove(isWhiteTurn);
+        position.setCastlingRights(findCastlingRights());
+    }
+
+    /**
+     * Get the bitboard piece code for a piece
+     * @param p piece
+     * @return piece code
+     */
+    private static int toPieceCode(Piece p){
+        int type;
+
+        if(p instanceof Pawn){
+            type = BitBoard.PAWN;
+        }
+        else if(p instanceof Knight){
+            type = BitBoard.KNIGHT;
+        }
+        else if(p instanceof Bishop){
+            type = BitBoard.BISHOP;
+        }
+        else if(p instanceof Rook){
+            type = BitBoard.ROOK;
+        }
+        else if(p instanceof Queen){
+            type = BitBoard.QUEEN;
+        }
+        else {
+            type = BitBoard.KING;
+        }
+
+        return BitBoard.pieceCode(type, p.isWhitePiece());
+    }
+
+    /**
+     * Sets the piece at [row][col] in both the pieces array and the bitboard position
+     * @param row row
+     * @param col col
+     * @param piece piece to set, null to clear the square
+     */
+    private void placePiece(int row, int col, Piece piece){
+        int square = BitBoard.square(row, col);
+
+        if(pieces[row][col] != null){
+            position.removePiece(square);
+        }
+
+        pieces[row][col] = piece;
+
+        if(piece != null){
+            position.putPiece(toPieceCode(piece), square);
+        }
+    }
+
+    /**
+     * Find castling rights from the king and rook first moves
+     * @return castling rights bit flags
+     */
+    private int findCastlingRights(){
+        int rights = 0;
+
+        if(whiteKing.isFirstMove() && pieces[SEVEN_POS][FOUR_POS] == whiteKing){
+            if(whiteRooks[1] != null && whiteRooks[1].isFirstMove() && pieces[SEVEN_POS][SEVEN_POS] == whiteRooks[1]){
+                rights |= BitBoard.WHITE_KING_SIDE;
+            }
+            if(whiteRooks[0] != null && whiteRooks[0].isFirstMove() && pieces[SEVEN_POS][0] == whiteRooks[0]){
+                rights |= BitBoard.WHITE_QUEEN_SIDE;
+            }
+        }
+
+        if(blackKing.isFirstMove() && pieces[0][FOUR_POS] == blackKing){
+            if(blackRooks[1] != null && blackRooks[1].isFirstMove() && pieces[0][SEVEN_POS] == blackRooks[1]){
+                rights |= BitBoard.BLACK_KING_SIDE;
+            }
+            if(blackRooks[0] != null && blackRooks[0].isFirstMove() && pieces[0][0] == blackRooks[0]){
+                rights |= BitBoard.BLACK_QUEEN_SIDE;
+            }
+        }
+
+        return rights;
+    }
+
+    /**
+     * Set up the board from a FEN. Kings and corner rooks keep their first move only for
+     * the castling rights given, pawns keep theirs on their starting row, and the pawn
+     * behind the en passant square is the one that can be taken en passant. A castling
+     * right without its king and rook in place is dropped
+     * @param fen FEN string, the halfmove and fullmove fields may be left off
+     * @throws IllegalArgumentException if the FEN is invalid
+     */
+    private void setFen(String fen){
+
+        //placement, side to move, castling and en passant are checked by the bitboard
+        position = BitBoard.fromFen(fen);
+
+        String[] fields = fen.trim().split("\\s+");
+        if(fields.length > 6){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        halfmoveClock = fields.length > 4 ? parseCounter(fields[4], 0, fen) : 0;
+        fullmoveNumber = fields.length > 5 ? parseCounter(fields[5], 1, fen) : 1;
+
+        isWhiteTurn = position.isWhiteToMove();
+        whiteRooks = new Rook[2];
+        blackRooks = new Rook[2];
+
+        int rights = position.getCastlingRights();
+        for(int square = 0; square < BitBoard.SQUARES; square++){
+            int piece = position.getPiece(square);
+            if(piece == BitBoard.EMPTY) { continue; }
+
+            pieces[square / ARRAY_SIZE][square % ARRAY_SIZE] = fenPiece(piece, square / ARRAY_SIZE, square % ARRAY_SIZE, rights, fen);
+        }
+
+        if(whiteKing == null || blackKing == null){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        //the pawn that just moved two squares is in front of the en passant square
+        int enPassantSquare = position.getEnPassantSquare();
+        if(enPassantSquare != BitBoard.NO_SQUARE){
+            int pawnRow = enPassantSquare / ARRAY_SIZE + (isWhiteTurn ? 1 : -1);
+            Piece p = pieces[pawnRow][enPassantSquare % ARRAY_SIZE];
+
+            if(pawnRow != (isWhiteTurn ? 3 : 4) || !(p instanceof Pawn) || p.isWhitePiece() == isWhiteTurn){
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+            ((Pawn) p).setEnPassant(true);
+        }
+
+        position.setCastlingRights(findCastlingRights());
+        isWhiteCheck = position.isInCheck(true);
+        isBlackCheck = position.isInCheck(false);
+    }
+
+    /**
+     * Make the piece for a square of a FEN, with its first move set from the castling rights
+     * @param piece piece code
+     * @param row row
+     * @param col col
+     * @param rights castling rights of the FEN
+     * @param fen FEN string, for the error message
+     * @return piece
+     * @throws IllegalArgumentException if a side has more than one king
+     */
+    private Piece fenPiece(int piece, int row, int col, int rights, String fen){
+        int type = BitBoard.typeOf(piece);
+        boolean isWhitePiece = BitBoard.isWhite(piece);
+        int homeRow = isWhitePiece ? SEVEN_POS : 0;
+        int kingSide = isWhitePiece ? BitBoard.WHITE_KING_SIDE : BitBoard.BLACK_KING_SIDE;
+        int queenSide = isWhitePiece ? BitBoard.WHITE_QUEEN_SIDE : BitBoard.BLACK_QUEEN_SIDE;
+
+        if(type == BitBoard.PAWN){
+            //a pawn remembers its starting row for en passant
+            int startRow = isWhitePiece ? SIX_POS : 1;
+            Pawn pawn = new Pawn(startRow, col, isWhitePiece);
+            pawn.setPosition(row, col);
+            pawn.setFirstMove(row == startRow);
+            return pawn;
+        }
+        else if(type == BitBoard.KNIGHT){
+            return new Knight(row, col, isWhitePiece);
+        }
+        else if(type == BitBoard.BISHOP){
+            return new Bishop(row, col, isWhitePiece);
+        }
+        else if(type == BitBoard.ROOK){
+            Rook rook = new Rook(row, col, isWhitePiece);
+            boolean isCorner = row == homeRow && (col == 0 || col == SEVEN_POS);
+
+            if(isCorner){
+                (isWhitePiece ? whiteRooks : blackRooks)[col == 0 ? 0 : 1] = rook;
+            }
+            rook.setFirstMove(isCorner && (rights & (col == 0 ? queenSide : kingSide)) != 0);
+            return rook;
+        }
+        else if(type == BitBoard.QUEEN){
+            return new Queen(row, col, isWhitePiece);
+        }
+
+        if(isWhitePiece ? whiteKing != null : blackKing != null){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        King king = new King(row, col, isWhitePiece);
+        king.setFirstMove(row == homeRow && col == FOUR_POS && (rights & (kingSide | queenSide)) != 0);
+
+        if(isWhitePiece){
+            whiteKing = king;
+        }
+        else {
+            blackKing = king;
+        }
+        return king;
+    }
+
+    /**
+     * Read the halfmove or fullmove field of a FEN
+     * @param field field
+     * @param min smallest value allowed
+     * @param fen FEN string, for the error message
+     * @return value of the field
+     * @throws IllegalArgumentException if the field is not a number of at least min
+     */
+    private static int parseCounter(String field, int min, String fen){
+        if(field.length() > 9){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        int value = 0;
+        for(int i = 0; i < field.length(); i++){
+            char c = field.charAt(i);
+            if(c < '0' || c > '9'){
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+            value = value * 10 + c - '0';
+        }
+
+        if(value < min){
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        return value;
     }
 
     public static int getRound(){
@@ -281,7 +606,7 @@ public class ChessBoard{
     }
 
     public static int getChessBoardListSize(){
-        return chessBoardList.size();
+        return (history.size() + 1) / 2;
     }
 
     public static String getMoveString(int row, int col){
@@ -292,6 +617,15 @@ public class ChessBoard{
         return movesList;
     }
 
+    /**
+     * Get the last move of the game
+     * @return last move, null if no moves were played
+     */
+    public static Move getLastMove(){
+        int move = history.lastMove();
+        return move == Move.NO_MOVE ? null : new Move(move);
+    }
+
     /**
      * Passes the row and col parameter to get the name for that object in the Piece array
      * @param row row parameter
@@ -331,6 +665,25 @@ public class ChessBoard{
         return null;
     }
 
+    /**
+     * Gets the cached icon at [row][col]
+     * @param row row
+     * @param col column
+     * @return icon, null if the square is empty
+     * @throws IllegalArgumentException if row or col is out of bounds
+     */
+    public ImageIcon getIcon(int row, int col){
+        if(row < 0 || row >= ARRAY_SIZE || col < 0 || col >= ARRAY_SIZE){
+            throw new IllegalArgumentException("Invalid row or col");
+        }
+
+        if(pieces[row][col] != null){
+            return pieces[row][col].getIcon();
+        }
+
+        return null;
+    }
+
     /**
      * Return the instance of piece at the specified row and column
      * @param row piece row
@@ -398,133 +751,15 @@ public class ChessBoard{
     private boolean isValidMove(int startRow, int startCol, int row, int col){
         if(canMove(startRow, startCol, row, col, true)){//peice can move to [row][col]
 
-            //finds if the piece to move is white or black
-            boolean isWhitePiece = pieces[startRow][startCol].isWhitePiece();
-
-            boolean doContinue = false;
-            Piece temp;
-
-            if(pieces[startRow][startCol] instanceof King){//Selected piece is king
-
-                //temp stores info from pieces[row][col]
-                temp = pieces[row][col];
-
-                //moves the King to the selected spot
-                pieces[row][col] = pieces[startRow][startCol];
-                pieces[startRow][startCol] = null;
-
-                if(isWhitePiece){//white side
-
-                    whiteKing.setPosition(row, col);
-
-                    if(isCheck(true)){//if when the kings moves and it is now in check
-                        doContinue = true; //it is invalid
-                    }
-                    whiteKing.setPosition(startRow, startCol);
-                }
-                else {//black side
-
-                    blackKing.setPosition(row, col);
-
-                    if(isCheck(false)){
-                        doContinue = true;
-                    }
-                    blackKing.setPosition(startRow, startCol);
-
-                }
-
-                //resets the kings position to original spot
-                pieces[startRow][startCol] = pieces[row][col];
-                pieces[row][col] = temp;
-
-            }
-
-            //If Moving a king and does should not continue, all checks are performed and (dont go to below checks)
-            //and sets the valid move in the bool array and makes hasValidMove true
-            if(pieces[startRow][startCol] instanceof King && !doContinue){
-                validMoves[row][col] = true;
-                return true;
-            }
-            else if(doContinue){
-                return false;
-            }
-
-            //when moving a white piece and white king is in check
-            if(isWhitePiece && isWhiteCheck){
-
-                //move the selected piece to the desired [row][col]
-                //making the starting spot null and storing the piece at [row][col]
-                temp = pieces[row][col];
-                pieces[row][col] = pieces[startRow][startCol];
-                pieces[startRow][startCol] = null;
-
-                //check white side king for check
-                if(isCheck(true)){
-                    doContinue = true;
-                }
-
-                //replace the moved pieces
-                pieces[startRow][startCol] = pieces[row][col];
-                pieces[row][col] = temp;
-            }
-            else if(!isWhitePiece && isBlackCheck){
-
-                temp = pieces[row][col];
-                pieces[row][col] = pieces[startRow][startCol];
-                pieces[startRow][startCol] = null;
-
-                //check black side king for check
-                if(isCheck(false)){
-                    doContinue = true;
-                }
-
-                pieces[startRow][startCol] = pieces[row][col];
-                pieces[row][col] = temp;
-            }
-
-            if(doContinue){
-                return false;
-            }
-
-            //check movement when same king is not in check
-            if((isWhitePiece && !isCheck(true)) ||
-                    (!isWhitePiece && !isCheck(false))) {
-
-                temp = pieces[row][col];
-                pieces[row][col] = pieces[startRow][startCol];
-                pieces[startRow][startCol] = null;
-
-
-                if(isWhitePiece){
-
-                    if(isCheck(true)){
-                        doContinue = true;
-                    }
-                }
-                else {
-
-                    if(isCheck(false)){
-                        doContinue = true;
-                    }
-                }
-
-                pieces[startRow][startCol] = pieces[row][col];
-                pieces[row][col] = temp;
-            }
-
-            //if above are true dont add [row][col] to valid moves
-            if(doContinue){
-                return false;
-            }
-
             //makes any piece unable to move to king positions
             if((row == whiteKing.getRow() && col == whiteKing.getCol()) ||
                     (row == blackKing.getRow() && col == blackKing.getCol())){
                 return false;
             }
 
-            //if at least one valid move if found set hasValidMove to true
-            return true;
+            //the move is invalid if it leaves its own king attacked, checked from the
+            //king square outward without moving any pieces
+            return position.leavesKingSafe(BitBoard.square(startRow, startCol), BitBoard.square(row, col));
         }
         return false;
     }
@@ -546,30 +781,6 @@ public class ChessBoard{
         }
     }
 
-    private ArrayList<Piece> getPiecesThatCanMoveTo(Piece piece, int endRow, int endCol){
-        ArrayList<Piece> rtn = new ArrayList<>();
-
-        for(Piece[] p : pieces){
-            for(Piece type : p){
-                if(type == null || piece.isWhitePiece() != type.isWhitePiece()){
-                    continue;
-                }
-                if(piece.getClass() != type.getClass()){
-                    continue;
-                }
-                if(type instanceof Pawn && type.getCol() != endCol && isValidMove(type.getRow(), type.getCol(),
-                        type.isWhitePiece() ? endRow + 1 : endRow - 1, endCol)){
-                    rtn.add(type);
-                    continue;
-                }
-                if(isValidMove(type.getRow(), type.getCol(), endRow, endCol)){
-                    rtn.add(type);
-                }
-            }
-        }
-        return rtn;
-    }
-
     /**
      * Calls canMove method for an object in Piece array
      * @param currentRow current row
@@ -896,11 +1107,7 @@ public class ChessBoard{
             throw new IllegalArgumentException("Invalid row or col");
         }
 
-        if(pieces[row][col] == null){
-            return true;
-        }
-
-        return false;
+        return position.isEmpty(BitBoard.square(row, col));
     }
 
     /**
@@ -924,43 +1131,34 @@ public class ChessBoard{
         return pieces[row][col].isWhitePiece() == isWhiteTurn;
     }
 
+    /**
+     * Find all legal moves for the side to move using the bitboard position
+     * @return list of legal moves
+     */
     public ArrayList<Move> allPossibleMoves(){
+        return position.generateMoves();
+    }
 
-        ArrayList<Move> moves = new ArrayList<>();
-
-        for(int startRow = 0; startRow < ChessBoard.ARRAY_SIZE; startRow++){
-
-            for(int startCol = 0; startCol < ChessBoard.ARRAY_SIZE; startCol++){
+    public void setMove(int currentRow, int currentCol, int newRow, int newCol){
+        setPosition(currentRow, currentCol, newRow, newCol);
+    }
 
-                if(pieces[startRow][startCol] == null) { continue; }
+    public void setMove(Move move){
+        setPosition(move.getStartRow(), move.getStartCol(), move.getEndRow(), move.getEndCol());
 
-                if(pieces[startRow][startCol].isWhitePiece() != isWhiteTurn) { continue; }
+        if(move.getPromotion() != null){
+            promote(move.getPromotion(), move.getEndRow(), move.getEndCol());
+        }
+    }
 
-                resetAvailableMoves();
-
-                if(!setValidMoves(startRow, startCol)) { continue; }
-
-                for(int endRow = 0; endRow < ChessBoard.ARRAY_SIZE; endRow++){
-
-                    for(int endCol = 0; endCol < ChessBoard.ARRAY_SIZE; endCol++){
-
-                        if(!isValidMove(endRow, endCol)) { continue; }
-
-                        moves.add(new Move(startRow, startCol, endRow, endCol));
-                    }
-                }
-            }
-        }
-
-        return moves;
-    }
-
-    public void setMove(int currentRow, int currentCol, int newRow, int newCol){
-        setPosition(currentRow, currentCol, newRow, newCol);
-    }
-
-    public void setMove(Move move){
-        setPosition(move.getStartRow(), move.getStartCol(), move.getEndRow(), move.getEndCol());
+    /**
+     * Check if moves made on this board are recorded in the game's moves list and history.
+     * Only moves played in the game are, not moves replayed, read from a file or searched,
+     * and not moves on any other board
+     * @return true if this board is the game instance and is not reading or searching
+     */
+    private boolean isRecording(){
+        return instance == this && !isReadingFile && !isMinimax;
     }
 
     public void setBoardState(ChessBoard chessBoard){
@@ -973,6 +1171,7 @@ public class ChessBoard{
         this.blackRooks = chessBoard.blackRooks;
         this.whiteKing = chessBoard.whiteKing;
         this.blackKing = chessBoard.blackKing;
+        this.position = chessBoard.position;
     }
 
     public static ChessBoard copy(ChessBoard other){
@@ -986,6 +1185,7 @@ public class ChessBoard{
         newChessBoard.blackRooks = other.blackRooks;
         newChessBoard.whiteKing = other.whiteKing;
         newChessBoard.blackKing = other.blackKing;
+        newChessBoard.position = other.position;
 
         return newChessBoard;
     }
@@ -1011,10 +1211,23 @@ public class ChessBoard{
             throw new IllegalArgumentException("Invalid new row or col");
         }
 
+        boolean isRecording = isRecording();
+
+        //the move is written from the position and its legal moves before anything changes,
+        //which the stalemate check after the last move usually generated already
+        String san = null;
+        if(isRecording){
+            int count = legalMoveCount();
+            san = SanWriter.toSan(position, Move.encode(BitBoard.square(currentRow, currentCol),
+                BitBoard.square(newRow, newCol), BitBoard.EMPTY, 0), legalMoves, count);
+        }
+
         boolean isWhitePiece = pieces[currentRow][currentCol].isWhitePiece();
         boolean castling = false;
-        boolean isEnPassant = false;
-        boolean isTaking = false;
+
+        //a pawn move or capture restarts the fifty move count
+        boolean resetsClock = pieces[currentRow][currentCol] instanceof Pawn ||
+            (pieces[newRow][newCol] != null && pieces[newRow][newCol].isWhitePiece() != isWhitePiece);
 
         int fixCol = newCol;
 
@@ -1042,17 +1255,17 @@ public class ChessBoard{
                 pieces[isWhitePiece ? SEVEN_POS : 0][isMovingRight ? SEVEN_POS : 0].setPosition(
                     isWhitePiece ? SEVEN_POS : 0, isMovingRight ? FIVE_POS : 3);
 
-                pieces[isWhitePiece ? SEVEN_POS : 0][isMovingRight ? FIVE_POS : 3] = 
-                    pieces[isWhitePiece ? SEVEN_POS : 0][isMovingRight ? SEVEN_POS : 0];
-                pieces[isWhitePiece ? SEVEN_POS : 0][isMovingRight ? SEVEN_POS : 0] = null;
+                placePiece(isWhitePiece ? SEVEN_POS : 0, isMovingRight ? FIVE_POS : 3,
+                    pieces[isWhitePiece ? SEVEN_POS : 0][isMovingRight ? SEVEN_POS : 0]);
+                placePiece(isWhitePiece ? SEVEN_POS : 0, isMovingRight ? SEVEN_POS : 0, null);
 
                 //set king position
                 pieces[isWhitePiece ? SEVEN_POS : 0][FOUR_POS].setPosition(
                     isWhitePiece ? SEVEN_POS : 0, isMovingRight ? SIX_POS : 2);
 
-                pieces[isWhitePiece ? SEVEN_POS : 0][isMovingRight ? SIX_POS : 2] = 
-                    pieces[isWhitePiece ? SEVEN_POS : 0][FOUR_POS];
-                pieces[isWhitePiece ? SEVEN_POS : 0][FOUR_POS] = null;
+                placePiece(isWhitePiece ? SEVEN_POS : 0, isMovingRight ? SIX_POS : 2,
+                    pieces[isWhitePiece ? SEVEN_POS : 0][FOUR_POS]);
+                placePiece(isWhitePiece ? SEVEN_POS : 0, FOUR_POS, null);
 
                 fixCol = isMovingRight ? SIX_POS : 2;
             
@@ -1095,8 +1308,7 @@ public class ChessBoard{
                     Pawn p2 = (Pawn)pieces[currentRow][newCol];
 
                     if(p2.getCanEnPassant()){
-                        isEnPassant = true;
-                        pieces[currentRow][newCol] = null;
+                        placePiece(currentRow, newCol, null);
                     }
                 }
             }
@@ -1108,85 +1320,60 @@ public class ChessBoard{
             pieces[currentRow][currentCol] = p;
         }
 
-        Ambiguous ambiguous = null;
         if(!castling){
             //make piece make their first move is havnt already
             pieces[currentRow][currentCol].setFirstMove(false);
 
-            if(!isReadingFile && !(pieces[currentRow][currentCol] instanceof King) && !(pieces[currentRow][currentCol] instanceof Pawn)){
-                //TODO: find ambiguous
-
-                isCheck(isWhiteTurn);
-
-                for(int row = 0; row < ARRAY_SIZE; row++){
-                    for(int col = 0; col < ARRAY_SIZE; col++){
-                        if(pieces[row][col] == null)
-                            continue;
-                        if(pieces[currentRow][currentCol].isWhitePiece() != pieces[row][col].isWhitePiece())
-                            continue;
-                        if(currentRow == row && currentCol == col)
-                            continue;
-                        if(pieces[currentRow][currentCol].getClass() != pieces[row][col].getClass())
-                            continue;
-
-                        if(isValidMove(row, col, newRow, newCol)){
-                            ambiguous = col == currentCol ? Ambiguous.USE_ROW : Ambiguous.USE_COL;
-                            break;
-                        }
-                    }
-                    if(ambiguous != null)
-                        break;
-                }
-            }
-
             //move the selected piece to new space
-            isTaking = pieces[newRow][newCol] != null;
             pieces[currentRow][currentCol].setPosition(newRow, fixCol);
-            pieces[newRow][fixCol] = pieces[currentRow][currentCol];
-            pieces[currentRow][currentCol] = null;
+            placePiece(newRow, fixCol, pieces[currentRow][currentCol]);
+            placePiece(currentRow, currentCol, null);
 
         }
 
-        if(instance == this && !isReadingFile && !isMinimax) {
-            addMoveString(currentRow, currentCol, newRow, newCol, castling, isEnPassant, isTaking, ambiguous);
+        //castling and en passant state for the bitboard position
+        position.setCastlingRights(findCastlingRights());
+        if(pieces[newRow][fixCol] instanceof Pawn && Math.abs(newRow - currentRow) == 2){
+            position.setEnPassantSquare(BitBoard.square((newRow + currentRow) / 2, newCol));
+        }
+        else {
+            position.setEnPassantSquare(BitBoard.NO_SQUARE);
+        }
+
+        if(isRecording) {
+            addMoveString(san);
 
+            //moves after the board that was gone back to are replaced by this one
             if(hasChangedInstance){
                 hasChangedInstance = false;
-
-                if(instance.isWhiteTurn){
-                    while(chessRound <= chessBoardList.size()){
-                        chessBoardList.remove(chessBoardList.size() - 1);
-                    }
-                }
-                else {
-                    while(chessRound < chessBoardList.size()){
-                        chessBoardList.remove(chessBoardList.size() - 1);
-                    }
-                    chessBoardList.get(chessRound - 1)[1] = null;
-                }
-
+                history.truncate((chessRound - 1) * 2 + (isWhiteTurn ? 0 : 1));
             }
 
-            if (instance.isWhiteTurn) {
-                chessBoardList.add(new ChessBoard[]{new ChessBoard(this), null});
-            } else {
-                chessBoardList.get(chessRound - 1)[1] = new ChessBoard(this);
+            if(!isWhiteTurn){
                 chessRound++;
             }
         }
 
+        halfmoveClock = resetsClock ? 0 : halfmoveClock + 1;
+        if(!isWhiteTurn){
+            fullmoveNumber++;
+        }
+
         isWhiteTurn = !isWhiteTurn;
+        position.setWhiteToMove(isWhiteTurn);
 
-    }
+        if(isRecording){
+            history.add(new Move(currentRow, currentCol, newRow, fixCol), this);
+        }
 
-    private void addMoveString(int currentRow, int currentCol, int newRow, int newCol, boolean castling, boolean isEnPassant, boolean isTaking, Ambiguous ambiguous){
+    }
 
-        if(isReadingFile){
-            return;
-        }
+    /**
+     * Add a move to the moves list, and the result after it when the move mates
+     * @param san move in SAN, as written before the move was made
+     */
+    private void addMoveString(String san){
 
-        //piece that is moving (already moved)
-        Piece piece = pieces[newRow][newCol];
         //where in array to add
         int addIdx = isWhiteTurn ? 0 : 1;
 
@@ -1194,54 +1381,9 @@ public class ChessBoard{
             movesList.add(new String[2]);
         }
 
-        if(castling){
-            if(isMovingRight(currentCol, newCol))
-                movesList.get(chessRound - 1)[addIdx] = KING_SIDE_CASTLE_0;
-            else
-                movesList.get(chessRound - 1)[addIdx] = QUEEN_SIDE_CASTLE_O;
-
-        }
-        else if(isEnPassant){
-            movesList.get(chessRound - 1)[addIdx] = String.format("%cx%c%d", (char) ('a' + currentCol), (char) ('a' + newCol), (ARRAY_SIZE - newRow));
-
-        }
-        else if(piece instanceof Pawn){
-            char c = (char) ('a' + currentCol);
-
-            if(isTaking){
-                char take = (char) ('a' + newCol);
-                movesList.get(chessRound - 1)[addIdx] = String.format("%cx%c%d",
-                        c, take, (ARRAY_SIZE - newRow));
-                return;
-            }
-
-            movesList.get(chessRound - 1)[addIdx] = "" + c + (ARRAY_SIZE - newRow);
-        }
-        else {
-            String move = piece.getName();
-
-            if(ambiguous != null){
-                //char clarity;
-                if(ambiguous == Ambiguous.USE_COL)
-                    move += (char) ('a' + currentCol);
-                else
-                    move += (ARRAY_SIZE - currentRow);
-
-                //move += clarity;
-            }
-
-            //TODO: fix same COL not working for ambiguous
-
-            if(isTaking)
-                move += "x";
-
-            move += ((char) ('a' + newCol));
-            move += (ARRAY_SIZE - newRow);
-            movesList.get(chessRound - 1)[addIdx] = move;
-        }
+        movesList.get(chessRound - 1)[addIdx] = san;
 
-        if(isCheckMate(!isWhiteTurn)) {
-            movesList.get(chessRound - 1)[addIdx] += "#";
+        if(san.endsWith("#")) {
             if(addIdx == 0){
                 movesList.get(chessRound - 1)[1] = isWhiteTurn ? WHITE_WIN : BLACK_WIN;
             }
@@ -1250,8 +1392,6 @@ public class ChessBoard{
                 movesList.get(chessRound)[0] = isWhiteTurn ? WHITE_WIN : BLACK_WIN;
             }
         }
-        else if(isCheck(!isWhiteTurn))
-            movesList.get(chessRound - 1)[addIdx] += "+";
     }
 
     /**
@@ -1323,23 +1463,12 @@ public class ChessBoard{
      * @return true is the king can be attacked resulting in check, else false
      */
     public boolean canAttackKing(boolean side){
-        //if the selected piece can move to king spot, return true
-        for(int row = 0; row < ARRAY_SIZE; row++){
-
-            for(int col = 0; col < ARRAY_SIZE; col++){
-
-                if(canMove(row, col, getKingRow(side), getKingCol(side), false)) {
-                    return true; 
-                }
-            }
-        }
-
-        return false;
+        return position.isInCheck(side);
     }
 
     /**
-     * Check if a king is in danger when moving by putting it in a temp postition then
-     * checking if any piece can attack it
+     * Check if a king is in danger when moving by looking outward from the new square
+     * for attackers, treating the king's current square as empty
      * @param kingRow initial king row
      * @param kingCol initial king col
      * @param moveRow check row
@@ -1347,41 +1476,7 @@ public class ChessBoard{
      * @return true if king gets put in check when moving, else return false
      */
     public boolean isKingInDanger(int kingRow, int kingCol, int moveRow, int moveCol){
-
-        //temp stores info from pieces[row][col]
-        Piece temp = pieces[moveRow][moveCol];
-
-        boolean isWhiteSide = pieces[kingRow][kingCol].isWhitePiece();
-        boolean rtn = false;
-
-        //moves the King to the selected spot
-        pieces[moveRow][moveCol] = pieces[kingRow][kingCol];
-        pieces[kingRow][kingCol] = null;
-
-        if(isWhiteSide){//white side
-            
-            whiteKing.setPosition(moveRow, moveCol);
-
-            if(canAttackKing(true)){//if when the kings moves and it is now in check
-                rtn = true; //it is invalid
-            }
-            whiteKing.setPosition(kingRow, kingCol);
-        }
-        else {//black side
-            blackKing.setPosition(moveRow, moveCol);
-
-            if(canAttackKing(false)){
-                rtn = true;
-            }
-            blackKing.setPosition(kingRow, kingCol);
-
-        }
-
-        //resets the kings position to original spot
-        pieces[kingRow][kingCol] = pieces[moveRow][moveCol];
-        pieces[moveRow][moveCol] = temp;
-
-        return rtn;
+        return !position.leavesKingSafe(BitBoard.square(kingRow, kingCol), BitBoard.square(moveRow, moveCol));
     }
 
     /**
@@ -1402,22 +1497,38 @@ public class ChessBoard{
         //     if(!isBlackCheck) { return false; }
         // }
 
-        boolean canKingMove = setValidMoves(getKingRow(side), getKingCol(side));
-
-        boolean canKingBeSaved = false;
-
-        for(int row = 0; row < ARRAY_SIZE; row++) {
+        //the generator only gives king moves, captures of the checker and blocks when in check
+        return !hasLegalMove(side);
+    }
 
-            for(int col = 0; col < ARRAY_SIZE; col++) {
+    /**
+     * Check if a side has a legal move. The moves of the side to move are kept for the
+     * position, so writing the next move does not generate them again
+     * @param side player side
+     * @return true if the side has a legal move, else false
+     */
+    private boolean hasLegalMove(boolean side){
+        if(side == position.isWhiteToMove()){
+            return legalMoveCount() > 0;
+        }
+        return !position.generateMoves(side).isEmpty();
+    }
 
-                if(pieces[row][col] == null) { continue; }
-                if(pieces[row][col].isWhitePiece() != side) { continue; }
+    /**
+     * Generate the legal moves of the side to move into legalMoves, once for each position
+     * @return number of legal moves
+     */
+    private int legalMoveCount(){
+        if(legalMoves == null){
+            legalMoves = new int[BitBoard.MAX_MOVES];
+        }
 
-                if(setValidMoves(row, col)) { canKingBeSaved = true; }
-            }
+        if(legalCount < 0 || legalKey != position.getKey()){
+            legalCount = position.generateMoves(legalMoves, 0);
+            legalKey = position.getKey();
         }
 
-        return !canKingMove && !canKingBeSaved;
+        return legalCount;
     }
 
     /**
@@ -1498,7 +1609,8 @@ public class ChessBoard{
     }
 
     /**
-     * Promote a pawn to chosen piece
+     * Promote a pawn to chosen piece, and record the promotion on the last move played
+     * if moves on this board are recorded
      * @param type what piece to promote to
      * @param row row to set
      * @param col col to set
@@ -1506,37 +1618,60 @@ public class ChessBoard{
      */
     public void promote(String type, int row, int col){
 
+        promotePiece(type, row, col);
+
+        if(!isRecording()) { return; }
+
+        String[] round = movesList.get(isWhiteTurn ? chessRound - 2 : chessRound - 1);
+        int idx = isWhiteTurn ? 1 : 0;
+
+        //check and mate depend on the piece promoted to
+        String san = round[idx];
+        boolean wasMate = san.endsWith("#");
+        while(san.endsWith("+") || san.endsWith("#")){
+            san = san.substring(0, san.length() - 1);
+        }
+        round[idx] = san + "=" + type + SanWriter.checkSuffix(position);
+
+        if(!wasMate && round[idx].endsWith("#")){
+            if(idx == 0){
+                round[1] = WHITE_WIN;
+            }
+            else {
+                movesList.add(new String[]{BLACK_WIN, null});
+            }
+        }
+
+        history.setLastPromotion(type, this);
+    }
+
+    /**
+     * Replace the piece at [row][col] with the promotion piece
+     * @param type what piece to promote to
+     * @param row row to set
+     * @param col col to set
+     * @throws IllegalArgumentException if type is invalid
+     */
+    private void promotePiece(String type, int row, int col){
+
         boolean isWhitePiece = pieces[row][col].isWhitePiece();
-        
+
         switch(type) {
             case "Q":
-            pieces[row][col] = new Queen(row, col, isWhitePiece);
+            placePiece(row, col, new Queen(row, col, isWhitePiece));
             break;
             case "N":
-            pieces[row][col] = new Knight(row, col, isWhitePiece);
+            placePiece(row, col, new Knight(row, col, isWhitePiece));
             break;
             case "B":
-            pieces[row][col] = new Bishop(row, col, isWhitePiece);
+            placePiece(row, col, new Bishop(row, col, isWhitePiece));
             break;
             case "R":
-            pieces[row][col] = new Rook(row, col, isWhitePiece);
+            placePiece(row, col, new Rook(row, col, isWhitePiece));
             break;
             default:
             throw new IllegalArgumentException("Invalid promotion.");
         }
-
-        if(isWhiteTurn){
-            movesList.get(chessRound - 2)[1] += "=" + type;
-            chessBoardList.get(chessRound - 2)[1] = new ChessBoard(this);
-        }
-        else{
-            movesList.get(chessRound - 1)[0] += "=" + type;
-            chessBoardList.get(chessRound - 1)[0] = new ChessBoard(this);
-        }
-
-
-
-        //chessBoardList.get(chessRound - 1)[isWhiteTurn ? 1 : 0] = new ChessBoard(this);
     }
     /**
      * Returns true is the move can be a possible castle and if it is
@@ -1562,10 +1697,7 @@ public class ChessBoard{
 
         if(isMovingRight(k.getCol(), moveCol)){
 
-            if(isWhiteSide && whiteRooks[1] == null){
-                return false;
-            }
-            else if(blackRooks[1] == null) {
+            if(isWhiteSide ? whiteRooks[1] == null : blackRooks[1] == null){
                 return false;
             }
 
@@ -1586,10 +1718,7 @@ public class ChessBoard{
         }
         else {
 
-            if(isWhiteSide && whiteRooks[0] == null){
-                return false;
-            }
-            else if(blackRooks[0] == null) {
+            if(isWhiteSide ? whiteRooks[0] == null : blackRooks[0] == null){
                 return false;
             }
 
@@ -1628,37 +1757,9 @@ public class ChessBoard{
             return false;
         }
 
-        boolean whiteHasMove = false;
-        boolean blackHasMove = false;
-
         //find an available move for black and white
-        for(int row = 0; row < ARRAY_SIZE; row++){
-
-            for(int col = 0; col < ARRAY_SIZE; col++){
-
-                if(pieces[row][col] == null) { continue; }
-
-                if(isValidMove(whiteKing.getRow(), whiteKing.getCol(), row, col)){
-                    whiteHasMove = true;
-                }
-                if(isValidMove(blackKing.getRow(), blackKing.getCol(), row, col)){
-                    blackHasMove = true;
-                }
-
-                if(pieces[row][col].isWhitePiece()) {
-                    if(setValidMoves(row, col)){
-                        whiteHasMove = true;
-                    }
-                }
-                else {
-                    if(setValidMoves(row, col)){
-                        blackHasMove = true;
-                    }
-                }
-
-                if(whiteHasMove && blackHasMove) { break; }
-            }
-        }
+        boolean whiteHasMove = hasLegalMove(true);
+        boolean blackHasMove = hasLegalMove(false);
 
         //when neither side has a move return true
         if(!whiteHasMove && !blackHasMove){
@@ -1694,9 +1795,6 @@ public class ChessBoard{
         resetAvailableMoves();
         //ChessBot bot = new ChessBot();
 
-        chessBot = new ChessBot();
-        Move moveChosen = null;
-
         switch (level) {
             case 0:
                 computerLevelZero(side);
@@ -1716,13 +1814,109 @@ public class ChessBoard{
 //                    chessBoardList.get(idx)[1] = new ChessBoard(this);
 //                    chessRound++;
 //                }
-                isMinimax = true;
-                moveChosen = chessBot.findBestMove(this, level);
-                isMinimax = false;
-                setMove(moveChosen);
+                setMove(findComputerMove(levelLimits(level)));
                 break;
         }
 
+        countComputerTurn();
+    }
+
+    /**
+     * Search limits of a computer level: the level is the depth, and the search
+     * is cut short if it takes too long
+     * @param level computer level, 1 or more
+     * @return limits
+     */
+    public static SearchLimits levelLimits(int level){
+        return new SearchLimits(level, SearchLimits.NO_LIMIT, BOT_MOVE_MILLIS);
+    }
+
+    /**
+     * Make the bot's move within search limits
+     * @param side computer side
+     * @param limits when the bot stops searching
+     * @throws IllegalArgumentException if game turns exceeds 200
+     */
+    public void computerMove(boolean side, SearchLimits limits){
+        resetAvailableMoves();
+        setMove(findComputerMove(limits));
+        countComputerTurn();
+    }
+
+    /**
+     * Search for the bot's move without making it
+     * @param limits when the bot stops searching
+     * @return the best move, null if there are no legal moves
+     */
+    public Move findComputerMove(SearchLimits limits){
+        return findComputerMove(limits, null);
+    }
+
+    /**
+     * Search for the bot's move without making it. The board must not change during the
+     * search, which can run on a background thread
+     * @param limits when the bot stops searching
+     * @param listener told about each finished iteration, null for none
+     * @return the best move, null if there are no legal moves
+     */
+    public Move findComputerMove(SearchLimits limits, ChessBot.SearchListener listener){
+        ChessBot bot = computer();
+
+        bot.setSearchListener(listener);
+        Move moveChosen = bot.findBestMove(position, limits);
+        bot.setSearchListener(null);
+
+        return moveChosen;
+    }
+
+    /**
+     * Get ready for a search on another thread: create the bot now so stopComputerMove
+     * reaches it even before the search starts, and forget a stop called after the last search
+     */
+    public void prepareComputerMove(){
+        computer().clearStop();
+    }
+
+    /**
+     * Get the bot, creating it the first time. The bot is kept between moves so its
+     * transposition table is reused
+     * @return bot
+     */
+    private ChessBot computer(){
+        ChessBot bot = chessBot;
+        if(bot == null){
+            bot = new ChessBot(ChessBot.DEFAULT_TABLE_MB, searchThreads);
+            chessBot = bot;
+        }
+        return bot;
+    }
+
+    /**
+     * Stop a search for the bot's move running on another thread, it returns the best move found so far
+     */
+    public void stopComputerMove(){
+        ChessBot bot = chessBot;
+        if(bot != null){
+            bot.stop();
+        }
+    }
+
+    /**
+     * Make a move the bot found with findComputerMove
+     * @param move move to make
+     * @throws IllegalArgumentException if game turns exceeds 200
+     */
+    public void makeComputerMove(Move move){
+        resetAvailableMoves();
+        setMove(move);
+        countComputerTurn();
+    }
+
+    /**
+     * Count a computer turn, ending simulated games that run too long
+     * @throws IllegalArgumentException if game turns exceeds 200
+     */
+    private void countComputerTurn(){
         simTurns++;
 
         if(simTurns >= 200){
@@ -1777,12 +1971,9 @@ public class ChessBoard{
                         if((doMove1 && doMove2)){
 
                             //automatically promote pawn to queen
-                            if(canPromote(selectRow, selectCol, row, side)){
-                                pieces[selectRow][selectCol] = new Queen(selectRow, selectCol, side);
-                            }
+                            boolean isPromoting = canPromote(selectRow, selectCol, row, side);
+                            setMove(new Move(selectRow, selectCol, row, col, isPromoting ? "Q" : null));
 
-                            setPosition(selectRow, selectCol, row, col);
-                            
                             moved = true;
                             break;
                         }
@@ -1797,14 +1988,19 @@ public class ChessBoard{
 
     }
 
+    /**
+     * Capture the piece that wins the most material once every recapture on the square
+     * is played out, skipping captures that lose material. Moves randomly when there is
+     * no such capture
+     * @param side side to move, true if white
+     */
     private void computerLevelOne(boolean side){
 
         int row = -1;
         int col = -1;
         int bestRow = -1;
         int bestCol = -1;        
-        int bestValue = 0;
-        boolean doBreak = false;
+        int bestValue = Integer.MIN_VALUE;
 
         ArrayList<int[]> randomMoves = new ArrayList<>();
             
@@ -1832,68 +2028,32 @@ public class ChessBoard{
                         //Skip if not a valid move
                         if(!isValidMove(endRow, endCol)) { continue; }
 
-                        if(pieces[endRow][endCol] instanceof Queen){//Attacking a Queen, priority
-                            bestValue = QUEEN_VALUE;
+                        if(pieces[endRow][endCol] == null){//No attack
+
+                            int[] moves = {startRow, startCol, endRow, endCol};
+                            randomMoves.add(moves);
+                            continue;
+                        }
+
+                        //material won after all recaptures
+                        int value = position.see(Move.encode(BitBoard.square(startRow, startCol),
+                            BitBoard.square(endRow, endCol), BitBoard.EMPTY, Move.CAPTURE));
+
+                        if(value > bestValue){
+                            bestValue = value;
                             bestRow = endRow;
                             bestCol = endCol;
                             row = startRow;
                             col = startCol;
-                            doBreak = true;
-                            break;
-                        }
-                        if(pieces[endRow][endCol] instanceof Bishop || pieces[endRow][endCol] instanceof Knight){//Attacking A Knight/Bishop
-                            
-                            if(BISHOP_KNIGHT_VALUE > bestValue){
-                                bestValue = BISHOP_KNIGHT_VALUE;
-                                bestRow = endRow;
-                                bestCol = endCol;
-                                row = startRow;                                
-                                col = startCol;
-                                break;
-                            }
-                        }
-                        if(pieces[endRow][endCol] instanceof Pawn){//Attacking a Pawn
-                        
-                            if(PAWN_VALUE > bestValue){
-                                bestValue = PAWN_VALUE;
-                                bestRow = endRow;
-                                bestCol = endCol;
-                                row = startRow;
-                                col = startCol;
-                                break;
-                            }
-                        }
-                        if(pieces[endRow][endCol] instanceof Rook){//Atacking a Rook
-                        
-                            if(ROOK_VALUE > bestValue){
-                                bestValue = ROOK_VALUE;
-                                bestRow = endRow;
-                                bestCol = endCol;
-                                row = startRow;
-                                col = startCol;
-                                break;
-                            }
-                        }
-                        if(pieces[endRow][endCol] == null && bestValue == 0){//No attack
-
-                            int[] moves = {startRow, startCol, endRow, endCol};
-                            randomMoves.add(moves);
                         }
                     }
-
-                    if(doBreak) { break; }
                 }
-
-                
-
-                if(doBreak) { break; }
             }
-
-            if(doBreak) { break; }
         }
 
-        if(bestValue == 0){
-            
+        //a losing capture is only played when nothing else is legal
+        if(bestValue < 0 && !randomMoves.isEmpty()){
+
             int rIdx = 0;
             if(randomMoves.size() != 1){
                 rIdx = new Random().nextInt(randomMoves.size() - 1);
@@ -1906,11 +2066,8 @@ public class ChessBoard{
             bestCol = move[3];
         }
 
-        if(canPromote(row, col, bestRow, side)){
-            pieces[row][col] = new Queen(row, col, side);
-        }
-
-        setPosition(row, col, bestRow, bestCol);
+        boolean isPromoting = canPromote(row, col, bestRow, side);
+        setMove(new Move(row, col, bestRow, bestCol, isPromoting ? "Q" : null));
     }
 
     /**
@@ -1946,374 +2103,46 @@ public class ChessBoard{
     public void loadChessFromFile(String filename){
         //resetChessBoard();
 
-        ArrayList<String> moves = ChessIO.readChessPGN(filename);
+        PgnMappedReader reader = ChessIO.openChessPGN(filename);
 
-        boolean hasResult = false;
-        String last = moves.get(moves.size() - 1);
-        if(WHITE_WIN.equals(last) || BLACK_WIN.equals(last) || STALEMATE.equals(last)) {
-            hasResult = true;
-            moves.remove(moves.size() - 1);
+        int type = reader.nextToken();
+        while(type == PgnMappedReader.TAG){
+            type = reader.nextToken();
         }
 
-        Iterator<String> iterator = moves.iterator();
-
-        boolean isWhite = true;
-        isReadingFile = true;
-        while(iterator.hasNext()){
-            String next = iterator.next();
-
-            if(WHITE_WIN.equals(next) || BLACK_WIN.equals(next) || STALEMATE.equals(next)) {
-                throw new IllegalArgumentException("The move " + next + " is invalid");
-            }
-
-            String promotion = null;
-            if(next.contains("=")){
-                if(next.indexOf("=") == next.length() - 1){
-                    throw new IllegalArgumentException("The move " + next + " is invalid");
-                }
-
-                promotion = Character.toString(next.charAt(next.length() - 1));
-                if(!"Q".equals(promotion) && !"B".equals(promotion) && !"N".equals(promotion) && !"R".equals(promotion)){
-                    throw new IllegalArgumentException("The move " + next + " is invalid");
-                }
-                next = next.substring(0, next.indexOf("="));
-            }
-
-            if(next.contains("+")){
-                if(next.indexOf("+") != next.length() - 1 || next.contains("#")){
-                    throw new IllegalArgumentException("The move " + next + " is invalid");
-                }
-                next = next.substring(0, next.indexOf("+"));
-            }
-
-            if(next.contains("#")){
-                if(next.indexOf("#") != next.length() - 1){
-                    throw new IllegalArgumentException("The move " + next + " is invalid");
-                }
-                if(iterator.hasNext()){
-                    throw new IllegalArgumentException("The move " + iterator.next() + " is invalid");
-                }
-                next = next.substring(0, next.indexOf("#"));
-            }
-
-            Move set = findMove(next, isWhite);
-            setMove(set);
-
-            if(promotion != null){
-                int row = set.getEndRow();
-                int col = set.getEndCol();
-                boolean isWhitePiece = pieces[row][col].isWhitePiece();
-                switch(promotion) {
-                    case "Q":
-                        pieces[row][col] = new Queen(row, col, isWhitePiece);
-                        break;
-                    case "N":
-                        pieces[row][col] = new Knight(row, col, isWhitePiece);
-                        break;
-                    case "B":
-                        pieces[row][col] = new Bishop(row, col, isWhitePiece);
-                        break;
-                    case "R":
-                        pieces[row][col] = new Rook(row, col, isWhitePiece);
-                        break;
-                    default:
-                        throw new IllegalArgumentException("The move " + iterator.next() + " is invalid");
-                }
-            }
-
-            if(isWhite){
-                int idx = movesList.size();
-                movesList.add(new String[2]);
-                movesList.get(idx)[0] = next;
-
-                chessBoardList.add(new ChessBoard[2]);
-                chessBoardList.get(idx)[0] = new ChessBoard(this);
-            }
-            else {
-                int idx = movesList.size() - 1;
-                movesList.get(idx)[1] = next;
-
-                chessBoardList.get(idx)[1] = new ChessBoard(this);
-                chessRound++;
-            }
-
-            isWhite = !isWhite;
-        }
-        isReadingFile = false;
-    }
-
-    private Move findMove(String move, boolean isWhite){
-
-        Move rtnMove = null;
-
-        if(KING_SIDE_CASTLE_0.equals(move) || KING_SIDE_CASTLE_O.equals(move)){
-            if(!canCastle(isWhite, isWhite ? SEVEN_POS : 0, 6)){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-            rtnMove = isWhite ? new Move(whiteKing.getRow(), whiteKing.getCol(), whiteKing.getRow(), SIX_POS) :
-                    new Move(blackKing.getRow(), blackKing.getCol(), blackKing.getRow(), SIX_POS);
-            return rtnMove;
-        }
-        if(QUEEN_SIDE_CASTLE_O.equals(move) || QUEEN_SIDE_CASTLE_0.equals(move)){
-            if(!canCastle(isWhite, isWhite ? SEVEN_POS : 0, 2)){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-            rtnMove = isWhite ? new Move(whiteKing.getRow(), whiteKing.getCol(), whiteKing.getRow(), 2) :
-                    new Move(blackKing.getRow(), blackKing.getCol(), blackKing.getRow(), 2);
-            return  rtnMove;
+        if(type != PgnMappedReader.MOVE){
+            throw new IllegalArgumentException("error reading the file: " + filename);
         }
 
-        if(move.length() == 2){
-            if(!Character.isLetter(move.charAt(0)) || !Character.isDigit(move.charAt(1))){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            int moveCol = move.charAt(0) - 'a';
-            int moveRow = ARRAY_SIZE - (move.charAt(1) - '0');
-            if(moveCol < 0 || moveCol > SEVEN_POS || moveRow > SEVEN_POS){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
+        SanDecoder decoder = new SanDecoder();
 
-            int pawnRow = -1;
-            if(isWhite){
-                for(int i = SEVEN_POS; i > 0; i--){
-                    if(pieces[i][moveCol] instanceof  Pawn){
-                        pawnRow = i;
-                        break;
-                    }
-                }
-            }
-            else {
-                for(int i = 0; i < SEVEN_POS; i++){
-                    if(pieces[i][moveCol] instanceof  Pawn){
-                        pawnRow = i;
-                        break;
-                    }
-                }
-            }
+        boolean isWhite = true;
+        isReadingFile = true;
+        try {
+            //only the first game is read, the result or the end of the file ends it
+            for(; type == PgnMappedReader.MOVE; type = reader.nextToken()){
 
-            if(pawnRow == -1 || !isValidMove(pawnRow, moveCol, moveRow, moveCol)) {
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
+                Move set = new Move(decoder.decode(position, reader));
+                setMove(set);
 
-            rtnMove = new Move(pawnRow, moveCol, moveRow, moveCol);
-            return rtnMove;
-        }
+                history.add(set, this);
 
-        char first = move.charAt(0);
-        Piece p = null;
-        boolean pawnMove = false;
-        switch(first) {
-            case 'K':
-                p = new King(0, 0, isWhite);
-                break;
-            case 'Q':
-                p = new Queen(0, 0, isWhite);
-                break;
-            case 'B':
-                p = new Bishop(0, 0, isWhite);
-                break;
-            case 'N':
-                p = new Knight(0, 0, isWhite);
-                break;
-            case 'R':
-                p = new Rook(0, 0, isWhite);
-                break;
-            default:
-                if(first == 'a' || first == 'b' || first == 'c' || first == 'd' || first == 'e' || first == 'f' || first == 'g' || first == 'h'){
-                    pawnMove = true;
-                    p = new Pawn(0, 0, isWhite);
+                String next = reader.getString();
+                if(isWhite){
+                    int idx = movesList.size();
+                    movesList.add(new String[2]);
+                    movesList.get(idx)[0] = next;
                 }
                 else {
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
+                    int idx = movesList.size() - 1;
+                    movesList.get(idx)[1] = next;
+                    chessRound++;
                 }
-                break;
-        }
-
-        if(move.length() == 3){
-
-            int moveCol = move.charAt(1) - 'a';
-            int moveRow = ARRAY_SIZE - (move.charAt(2) - '0');
-            if(moveCol < 0 || moveCol > SEVEN_POS || moveRow > SEVEN_POS){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
 
-            ArrayList<Piece> possible = getPiecesThatCanMoveTo(p, moveRow, moveCol);
-            if(possible.size() != 1){
-                throw new IllegalArgumentException("The move " + move + " is ambiguous");
+                isWhite = !isWhite;
             }
-            return new Move(possible.get(0).getRow(), possible.get(0).getCol(), moveRow, moveCol);
+        } finally {
+            isReadingFile = false;
         }
-
-        if(move.length() == 4){
-            int moveCol = move.charAt(2) - 'a';
-            int moveRow = ARRAY_SIZE - (move.charAt(3) - '0');
-            if(moveCol < 0 || moveCol > SEVEN_POS || moveRow > SEVEN_POS){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            ArrayList<Piece> possible = getPiecesThatCanMoveTo(p, moveRow, moveCol);
-            if(possible.isEmpty()){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            if(possible.size() == 1 && possible.get(0) instanceof Pawn){
-                if((canEnPassant(possible.get(0).getRow(), possible.get(0).getCol(), possible.get(0).getRow(), moveCol))){
-                    return new Move(possible.get(0).getRow(), possible.get(0).getCol(), moveRow, moveCol);
-                }
-            }
-
-            if(move.contains("x")){
-                if(move.indexOf("x") != 1 || pieces[moveRow][moveCol] == null){
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
-                }
-                if(possible.size() != 1){
-                    if(!(p instanceof Pawn)){
-                        throw new IllegalArgumentException("The move " + move + " is ambiguous");
-                    }
-                    int pawnRow = -1;
-                    if(isWhite){
-                        for(int i = SEVEN_POS; i > 0; i--){
-                            if(pieces[i][move.charAt(0) - 'a'] instanceof  Pawn){
-                                pawnRow = i;
-                                break;
-                            }
-                        }
-                    }
-                    else {
-                        for(int i = 0; i < SEVEN_POS; i++){
-                            if(pieces[i][move.charAt(0) - 'a'] instanceof  Pawn){
-                                pawnRow = i;
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                if(!isValidMove(possible.get(0).getRow(), possible.get(0).getCol(), moveRow, moveCol)){
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
-                }
-
-                return new Move(possible.get(0).getRow(), possible.get(0).getCol(), moveRow, moveCol);
-            }
-
-//            if(possible.size() == 1){
-//                throw new IllegalArgumentException("The move " + move + " is ambiguous");
-//            }
-
-            char ambiguous = move.charAt(1);
-            Ambiguous type = null;
-            if(Character.isLetter(ambiguous)){
-//                if(ambiguous != 'a' && ambiguous != 'b' && ambiguous != 'c' && ambiguous != 'd' &&
-//                    ambiguous != 'e' && ambiguous != 'f' && ambiguous != 'g' && ambiguous != 'h'){
-//                    throw new IllegalArgumentException("The move " + move + " is invalid");
-//                }
-                if(ambiguous - 'a' < 0 || ambiguous - 'a' > SEVEN_POS){
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
-                }
-                ambiguous -= 'a';
-                type = Ambiguous.USE_COL;
-            }
-            else if(Character.isDigit(ambiguous)){
-                if(ambiguous - '0' < 1 || ambiguous - '0' > ARRAY_SIZE){
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
-                }
-                ambiguous = (char) (ARRAY_SIZE - (ambiguous - '0'));
-                type = Ambiguous.USE_ROW;
-            }
-            else {
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            int startRow = possible.get(0).getRow();
-            int startCol = possible.get(0).getCol();
-
-            int counter = 0;
-            for(Piece piece : possible){
-                if(type == Ambiguous.USE_COL && piece.getCol() == (int) ambiguous){
-                    startRow = piece.getRow();
-                    startCol = piece.getCol();
-                    counter++;
-                }
-                else if(type == Ambiguous.USE_ROW && piece.getRow() == (int) ambiguous){
-                    startRow = piece.getRow();
-                    startCol = piece.getCol();
-                    counter++;
-                }
-            }
-
-            if(counter != 1 || !isValidMove(startRow, startCol, moveRow, moveCol)){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-            return new Move(startRow, startCol, moveRow, moveCol);
-        }
-
-        if(move.length() == 5){
-            int moveCol = move.charAt(3) - 'a';
-            int moveRow = ARRAY_SIZE - (move.charAt(4) - '0');
-            if(moveCol < 0 || moveCol > SEVEN_POS || moveRow > SEVEN_POS){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            ArrayList<Piece> possible = getPiecesThatCanMoveTo(p, moveRow, moveCol);
-            if(possible.isEmpty()){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            if(!move.contains("x")){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-            if(move.indexOf("x") != 2 || pieces[moveRow][moveCol] == null){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            char ambiguous = move.charAt(1);
-            Ambiguous type = null;
-            if(Character.isLetter(ambiguous)){
-                if(ambiguous - 'a' < 0 || ambiguous - 'a' > SEVEN_POS){
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
-                }
-                ambiguous -= 'a';
-                type = Ambiguous.USE_COL;
-            }
-            else if(Character.isDigit(ambiguous)){
-                if(ambiguous - '0' < 1 || ambiguous - '0' > ARRAY_SIZE){
-                    throw new IllegalArgumentException("The move " + move + " is invalid");
-                }
-                ambiguous = (char) (ARRAY_SIZE - (ambiguous - '0'));
-                type = Ambiguous.USE_ROW;
-            }
-            else {
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-
-            int startRow = possible.get(0).getRow();
-            int startCol = possible.get(0).getCol();
-
-            int counter = 0;
-            for(Piece piece : possible){
-                if(type == Ambiguous.USE_COL && piece.getCol() == (int) ambiguous){
-                    startRow = piece.getRow();
-                    startCol = piece.getCol();
-                    counter++;
-                }
-                else if(type == Ambiguous.USE_ROW && piece.getRow() == (int) ambiguous){
-                    startRow = piece.getRow();
-                    startCol = piece.getCol();
-                    counter++;
-                }
-            }
-
-            if(counter != 1 || !isValidMove(startRow, startCol, moveRow, moveCol)){
-                throw new IllegalArgumentException("The move " + move + " is invalid");
-            }
-            return new Move(startRow, startCol, moveRow, moveCol);
-        }
-        
-        if(rtnMove == null){
-            throw new IllegalArgumentException("The move " + move + " is invalid");
-        }
-        
-        return rtnMove;
     }
 }
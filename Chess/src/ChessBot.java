@@ -1,9 +1,19 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Chess Bot
- * Utilizes minimax algorithm
+ * Utilizes alpha-beta search with iterative deepening on a bitboard copy of the board,
+ * with moves packed into ints so the search does not create objects per move
+ *
+ * With more than one thread the search is Lazy SMP: helper bots search the same root
+ * at staggered depths on their own copies of the board, with their own killers and
+ * history, and share this bot's transposition table. The results they store cut off
+ * the main search, which picks the move
  * @author David Martinez
  */
 public class ChessBot {
@@ -14,167 +24,845 @@ public class ChessBot {
     /** Number of Moves that were checked */
     private int movesChecked;
 
-    /** How far to check in the future board states */
-    private int depth;
+    /** Deepest search that finished */
+    private int completedDepth;
 
-    /** Starting Evaluation */
-    private int startEvaluation;
+    /** Number of moves that can be checked before the search stops, 0 for no limit */
+    private long maxMoves;
 
-    /** Pawn Value */
-    private static final int PAWN_VALUE = 10;
+    /** Time the search has to stop by in milliseconds, 0 for no limit */
+    private long deadline;
 
-    /** Bishop and Knight Value */
-    private static final int BISHOP_KNIGHT_VALUE = 30;
+    /** True once the search has run out of moves or time */
+    private boolean stopped;
 
-    /** Rook Value */
-    private static final int ROOK_VALUE = 50;
+    /** Set from another thread to stop the search, read every STOP_CHECK_INTERVAL moves */
+    private volatile boolean aborted;
 
-    /** Queen Value */
-    private static final int QUEEN_VALUE = 90;
+    /** Told about each finished iteration, null for none */
+    private volatile SearchListener listener;
 
-    /** King Value */
-    private static final int KING_VALUE = 900;
+    /** Bots that search alongside this one on other threads, sharing its table */
+    private final ChessBot[] helpers;
+
+    /**
+     * Threads the helpers of every bot search on. Threads are made as searches need them
+     * and end after a minute idle, so a bot that is dropped leaves no threads behind.
+     * They are daemon threads so an idle bot does not keep the program running
+     */
+    private static final ExecutorService HELPER_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ChessBot helper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Results of positions already searched */
+    private TranspositionTable table;
+
+    /** Position being searched, a copy of the board's position */
+    private BitBoard position;
+
+    /** Packed moves for every ply, each ply uses MAX_MOVES entries starting at ply * MAX_MOVES */
+    private final int[] moveStack = new int[MAX_PLY * BitBoard.MAX_MOVES];
+
+    /** Ordering score of each move in the move stack */
+    private final int[] moveScores = new int[MAX_PLY * BitBoard.MAX_MOVES];
+
+    /** Two quiet moves per ply that caused a cutoff, most recent first */
+    private final int[] killers = new int[MAX_PLY * 2];
+
+    /** Cutoff count of quiet moves weighted by depth, indexed by side, start square and end square */
+    private final int[] history = new int[2 * BitBoard.SQUARES * BitBoard.SQUARES];
+
+    /** Random tie breaks between equal root moves */
+    private final Random random = new Random();
+
+    /** Deepest ply the move stack has room for */
+    private static final int MAX_PLY = 64;
+
+    /** Evaluation of checkmate at the root, mates further away score less */
+    private static final int MATE_VALUE = 30000;
+
+    /** Evaluations beyond this are mates */
+    private static final int MATE_BOUND = MATE_VALUE - MAX_PLY;
 
     /** Minimum Possible Evaluation Of Chess Board */
-    private static final int MIN_EVALUATION = -900;
+    private static final int MIN_EVALUATION = -MATE_VALUE - 1;
 
     /** Maximum Possible Evaluation Of Chess Board */
-    private static final int MAX_EVALUATION = 900;
+    private static final int MAX_EVALUATION = MATE_VALUE + 1;
+
+    /** How many moves are checked between looking at the clock and the stop flag */
+    private static final int STOP_CHECK_INTERVAL = 1024;
+
+    /** Margin added to a capture's gain before delta pruning skips it */
+    private static final int DELTA_MARGIN = 200;
+
+    /** Ordering score of captures that do not lose material, ahead of quiet moves */
+    private static final int GOOD_CAPTURE_SCORE = 1 << 20;
+
+    /** Ordering score of the first killer move, the second one scores one less */
+    private static final int KILLER_SCORE = 1 << 19;
+
+    /** Ordering score of captures that lose material, behind quiet moves */
+    private static final int BAD_CAPTURE_SCORE = -(1 << 20);
+
+    /** History scores are halved once one goes past this, keeping them below the killers */
+    private static final int MAX_HISTORY = 1 << 16;
+
+    /** Memory used by the transposition table in MB when no size is given */
+    public static final int DEFAULT_TABLE_MB = 16;
+
+    /** Threads used when no count is given */
+    public static final int DEFAULT_THREADS = 1;
 
     // /** Point Evaluation of Current Board Layout */
     // private int evaluation;
 
+    /**
+     * Receives the progress of a search on the searching thread, so a GUI can show it
+     */
+    public interface SearchListener {
+
+        /**
+         * Called after each finished iteration of the main search
+         * @param depth depth that finished
+         * @param nodes moves checked so far by every thread
+         * @param bestMove best move at that depth
+         */
+        void iterationFinished(int depth, long nodes, Move bestMove);
+    }
+
     ChessBot(){
+        this(DEFAULT_TABLE_MB);
+    }
+
+    /**
+     * Creates a bot with a transposition table of the given size
+     * @param tableMegabytes transposition table memory budget in MB
+     */
+    ChessBot(int tableMegabytes){
+        this(tableMegabytes, DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a bot with a transposition table of the given size that searches on several threads
+     * @param tableMegabytes transposition table memory budget in MB
+     * @param threads number of threads to search on, including the calling thread
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    ChessBot(int tableMegabytes, int threads){
+        this(new TranspositionTable(tableMegabytes), threads);
     }
 
     /**
-     * Find the best move on the board for the given side
+     * Creates a bot that uses the given table
+     * @param table transposition table, shared with the helpers
+     * @param threads number of threads to search on, including the calling thread
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    private ChessBot(TranspositionTable table, int threads){
+        if(threads < 1){
+            throw new IllegalArgumentException("Bot needs at least 1 thread");
+        }
+
+        this.table = table;
+        this.helpers = new ChessBot[threads - 1];
+
+        for(int i = 0; i < helpers.length; i++){
+            helpers[i] = new ChessBot(table, 1);
+        }
+    }
+
+    /**
+     * Find the best move on the board for the side to move
      * @param chessBoard board instance
      * @param depth depth to search
      * @return the best move
      */
     public Move findBestMove(ChessBoard chessBoard, int depth){
-        this.depth = depth;
-        this.startEvaluation = evaluateBoard(chessBoard);
-        this.movesChecked = 0;
-        
-        minimax(chessBoard, depth, false);
+        return findBestMove(chessBoard.getPosition(), SearchLimits.depth(depth));
+    }
+
+    /**
+     * Find the best move on the board for the side to move, searching one depth
+     * deeper each iteration. When the move or time budget runs out the best move
+     * of the last finished iteration is returned
+     * @param chessBoard board instance
+     * @param depth deepest depth to search
+     * @param maxMoves number of moves that can be checked, 0 for no limit
+     * @param maxMillis time the search can take in milliseconds, 0 for no limit
+     * @return the best move, null if there are no legal moves
+     */
+    public Move findBestMove(ChessBoard chessBoard, int depth, long maxMoves, long maxMillis){
+        return findBestMove(chessBoard.getPosition(), depth, maxMoves, maxMillis);
+    }
+
+    /**
+     * Find the best move in a position for the side to move
+     * @param root position to search, it is not changed
+     * @param depth deepest depth to search
+     * @param maxMoves number of moves this thread can check, 0 for no limit
+     * @param maxMillis time the search can take in milliseconds, 0 for no limit
+     * @return the best move, null if there are no legal moves
+     */
+    public Move findBestMove(BitBoard root, int depth, long maxMoves, long maxMillis){
+        return findBestMove(root, new SearchLimits(depth, maxMoves, maxMillis));
+    }
+
+    /**
+     * Find the best move in a position for the side to move, searching one depth deeper
+     * each iteration until a limit is reached or stop is called, and returning the best
+     * move of the last finished iteration. With a time limit a new iteration is not
+     * started after half the time is used, as it would not finish. Helpers search until
+     * this bot's search finishes
+     * @param root position to search, it is not changed
+     * @param limits when to stop searching
+     * @return the best move, null if there are no legal moves
+     */
+    public Move findBestMove(BitBoard root, SearchLimits limits){
+        long startTime = System.currentTimeMillis();
+        long millis = limits.getMillis();
+        long hardDeadline = millis > 0 ? startTime + millis : 0;
+        long softDeadline = millis > 0 ? startTime + millis / 2 : 0;
+        int depth = limits.getDepth() == SearchLimits.NO_LIMIT ? MAX_PLY - 1 : limits.getDepth();
+
+        ArrayList<Future<?>> results = new ArrayList<>();
+
+        //half the helpers skip the first depth and go one deeper so the threads are spread over depths
+        for(int i = 0; i < helpers.length; i++){
+            ChessBot helper = helpers[i];
+            int stagger = (i + 1) % 2;
+            helper.aborted = false;
+            results.add(HELPER_POOL.submit(() -> helper.search(root, 1 + stagger, depth + stagger, 0, hardDeadline, 0)));
+        }
+
+        int bestMove = search(root, 1, depth, limits.getNodes(), hardDeadline, softDeadline);
+
+        for(ChessBot helper : helpers){
+            helper.aborted = true;
+        }
+
+        try {
+            for(Future<?> result : results){
+                result.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Helper search failed", e);
+        }
+
+        for(ChessBot helper : helpers){
+            movesChecked += helper.movesChecked;
+        }
+
+        //a stop is used up by the search it stopped
+        aborted = false;
+
+        moveChosen = bestMove == Move.NO_MOVE ? null : new Move(bestMove);
 
         // System.out.println(moveChosen.toString());
         // System.out.println("\nReturn:\n" + chessBoard.toString());
         return moveChosen;
     }
 
-    private int evaluateBoard(ChessBoard chessBoard){
+    /**
+     * Stop the search running on another thread. findBestMove returns the best move of
+     * the last finished iteration soon after. A stop called before the search starts
+     * stops it as soon as it starts
+     */
+    public void stop(){
+        aborted = true;
 
-        int evaluation = 0;
+        for(ChessBot helper : helpers){
+            helper.aborted = true;
+        }
+    }
 
-        for(int row = 0; row < ChessBoard.ARRAY_SIZE; row++){
+    /**
+     * Forget a stop called after the last search finished, so the next search runs
+     */
+    public void clearStop(){
+        aborted = false;
+    }
+
+    /**
+     * Search a position one depth deeper each iteration on this thread
+     * @param root position to search, copied before searching
+     * @param firstDepth depth of the first iteration
+     * @param depth deepest depth to search
+     * @param maxMoves number of moves that can be checked, 0 for no limit
+     * @param searchDeadline time the search has to stop by in milliseconds, 0 for no limit
+     * @param iterationDeadline time after which no new iteration is started in milliseconds, 0 for no limit
+     * @return best move of the last finished iteration, NO_MOVE if there are no legal moves
+     */
+    private int search(BitBoard root, int firstDepth, int depth, long maxMoves, long searchDeadline,
+            long iterationDeadline){
+        this.movesChecked = 0;
+        this.completedDepth = 0;
+        this.maxMoves = maxMoves;
+        this.deadline = searchDeadline;
+        this.stopped = false;
+        this.position = new BitBoard(root);
+
+        //killers belong to the plies of one search, history carries over at half weight
+        Arrays.fill(killers, Move.NO_MOVE);
+        ageHistory();
+
+        int rootCount = position.generateMoves(moveStack, 0);
+
+        if(rootCount == 0){
+            return Move.NO_MOVE;
+        }
+
+        //equal moves are chosen at random
+        for(int i = rootCount - 1; i > 0; i--){
+            swap(moveStack, i, random.nextInt(i + 1));
+        }
 
-            for(int col = 0; col < ChessBoard.ARRAY_SIZE; col++){
+        boolean isMaximizing = position.isWhiteToMove();
+        int bestMove = Move.NO_MOVE;
 
-                if(chessBoard.isNull(row, col)) { continue; }
+        for(int iteration = Math.min(firstDepth, depth); iteration <= Math.min(depth, MAX_PLY - 1); iteration++){
 
-                Piece p = chessBoard.getPiece(row, col);
+            int iterationMove = searchRoot(rootCount, iteration, isMaximizing);
 
-                if(p instanceof Pawn){
-                    evaluation += p.isWhitePiece() ? PAWN_VALUE : PAWN_VALUE * -1;
+            //an unfinished iteration has not looked at every move
+            if(stopped) { break; }
+
+            bestMove = iterationMove;
+            completedDepth = iteration;
+
+            SearchListener current = listener;
+            if(current != null){
+                current.iterationFinished(iteration, getTotalMovesChecked(), new Move(bestMove));
+            }
+
+            //search the best move first in the next iteration
+            for(int i = 1; i < rootCount; i++){
+                if(moveStack[i] == bestMove){
+                    System.arraycopy(moveStack, 0, moveStack, 1, i);
+                    moveStack[0] = bestMove;
+                    break;
                 }
-                if(p instanceof Bishop || p instanceof Knight){
-                    evaluation += p.isWhitePiece() ? BISHOP_KNIGHT_VALUE : BISHOP_KNIGHT_VALUE * -1;
+            }
+
+            //the next iteration would not finish in time
+            if(iterationDeadline > 0 && System.currentTimeMillis() >= iterationDeadline) { break; }
+        }
+
+        return bestMove == Move.NO_MOVE ? moveStack[0] : bestMove;
+    }
+
+    /**
+     * Evaluation from white's side. Material and piece-square scores are kept up to date
+     * by the position as moves are made, so this is constant time
+     * @return evaluation in centipawns
+     */
+    private int evaluateBoard(){
+        return position.getEvaluation();
+    }
+
+    /**
+     * Evaluation of a position with no legal moves
+     * @param ply distance from the root, a closer mate scores higher
+     * @return mate score against the side to move, or 0 for stalemate
+     */
+    private int evaluateNoMoves(int ply){
+        boolean isWhite = position.isWhiteToMove();
+
+        if(!position.isInCheck(isWhite)){
+            return 0;
+        }
+
+        return isWhite ? -(MATE_VALUE - ply) : MATE_VALUE - ply;
+    }
+
+    /**
+     * Convert a mate score to be counted from the current node instead of the root,
+     * so it can be used from the table at a different ply
+     * @param score evaluation
+     * @param ply distance from the root
+     * @return score to store
+     */
+    private static int toTableScore(int score, int ply){
+        if(score > MATE_BOUND){
+            return score + ply;
+        }
+        if(score < -MATE_BOUND){
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Convert a stored mate score back to be counted from the root
+     * @param score stored score
+     * @param ply distance from the root
+     * @return evaluation
+     */
+    private static int fromTableScore(int score, int ply){
+        if(score > MATE_BOUND){
+            return score - ply;
+        }
+        if(score < -MATE_BOUND){
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Search every root move to a depth
+     * @param rootCount number of root moves at the start of the move stack, searched in order
+     * @param depth depth to search
+     * @param isMaximizing true if the side to move is white
+     * @return the best move, or NO_MOVE if the search was stopped
+     */
+    private int searchRoot(int rootCount, int depth, boolean isMaximizing){
+
+        int bestMove = moveStack[0];
+        int alpha = MIN_EVALUATION;
+        int beta = MAX_EVALUATION;
+
+        for(int i = 0; i < rootCount; i++){
+            int move = moveStack[i];
+            movesChecked++;
+            long undo = position.makeMove(move);
+            int evaluation = alphaBeta(depth - 1, 1, alpha, beta, !isMaximizing);
+            position.unmakeMove(move, undo);
+
+            if(stopped) { return Move.NO_MOVE; }
+
+            if(isMaximizing && evaluation > alpha){
+                alpha = evaluation;
+                bestMove = move;
+            }
+            if(!isMaximizing && evaluation < beta){
+                beta = evaluation;
+                bestMove = move;
+            }
+        }
+
+        return bestMove;
+    }
+
+    /**
+     * Alpha-beta search below the root
+     * @param depth depth left to search
+     * @param ply distance from the root, picks this node's part of the move stack
+     * @param alpha lowest evaluation white is already sure of
+     * @param beta highest evaluation black is already sure of
+     * @param isMaximizing true if white is to move
+     * @return evaluation of the board, meaningless if the search was stopped
+     */
+    private int alphaBeta(int depth, int ply, int alpha, int beta, boolean isMaximizing){
+
+        if(isOutOfBudget()){
+            return 0;
+        }
+
+        //keep searching captures so the evaluation is not taken mid exchange
+        if(depth == 0){
+            return quiescence(ply, alpha, beta, isMaximizing);
+        }
+
+        long key = position.getKey();
+        long entry = table.probe(key);
+        int tableMove = TranspositionTable.NO_MOVE;
+
+        if(entry != TranspositionTable.NO_ENTRY){
+            tableMove = TranspositionTable.move(entry);
+
+            //a result from at least this depth can end the search here
+            if(TranspositionTable.depth(entry) >= depth){
+                int score = fromTableScore(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+
+                if(bound == TranspositionTable.EXACT){
+                    return score;
                 }
-                if(p instanceof Rook){
-                    evaluation += p.isWhitePiece() ? ROOK_VALUE : ROOK_VALUE * -1;
+                if(bound == TranspositionTable.LOWER_BOUND && score >= beta){
+                    return score;
                 }
-                if(p instanceof Queen){
-                    evaluation += p.isWhitePiece() ? QUEEN_VALUE : QUEEN_VALUE * -1;
+                if(bound == TranspositionTable.UPPER_BOUND && score <= alpha){
+                    return score;
                 }
-                if(p instanceof King){
-                    evaluation += p.isWhitePiece() ? KING_VALUE : KING_VALUE * -1;
+            }
+        }
+
+        int start = ply * BitBoard.MAX_MOVES;
+        int end = position.generateMoves(moveStack, start);
+
+        if(end == start){
+            return evaluateNoMoves(ply);
+        }
+
+        orderMoves(start, end, tableMove, ply);
+
+        int startAlpha = alpha;
+        int startBeta = beta;
+        int bestMove = Move.NO_MOVE;
+
+        for(int i = start; i < end; i++){
+            int move = moveStack[i];
+            movesChecked++;
+            long undo = position.makeMove(move);
+            int evaluation = alphaBeta(depth - 1, ply + 1, alpha, beta, !isMaximizing);
+            position.unmakeMove(move, undo);
+
+            if(isMaximizing && evaluation > alpha){
+                alpha = evaluation;
+                bestMove = move;
+            }
+            if(!isMaximizing && evaluation < beta){
+                beta = evaluation;
+                bestMove = move;
+            }
+
+            //the other side will not allow this line
+            if(alpha >= beta){
+                if(!Move.isCapture(move) && Move.promotion(move) == BitBoard.EMPTY){
+                    storeCutoff(move, ply, depth, isMaximizing);
                 }
+                break;
+            }
+        }
+
+        int evaluation = isMaximizing ? alpha : beta;
+
+        //an unfinished search cannot be trusted
+        if(!stopped){
+            int bound = TranspositionTable.EXACT;
+            if(evaluation >= startBeta){
+                bound = TranspositionTable.LOWER_BOUND;
+            }
+            else if(evaluation <= startAlpha){
+                bound = TranspositionTable.UPPER_BOUND;
             }
+
+            table.store(key, depth, bound, toTableScore(evaluation, ply), bestMove & Move.SQUARES_MASK);
         }
 
         return evaluation;
     }
 
-    private int minimax(ChessBoard chessBoard, int depth, boolean isMaximizing){
+    /**
+     * Search captures only until the position is quiet. The side to move can stand pat
+     * on the evaluation instead of capturing, unless it is in check, when every evasion
+     * is searched
+     * @param ply distance from the root, picks this node's part of the move stack
+     * @param alpha lowest evaluation white is already sure of
+     * @param beta highest evaluation black is already sure of
+     * @param isMaximizing true if white is to move
+     * @return evaluation of the board, meaningless if the search was stopped
+     */
+    private int quiescence(int ply, int alpha, int beta, boolean isMaximizing){
 
-        //ChessBoard editBoard = new ChessBoard(chessBoard);
+        if(isOutOfBudget()){
+            return 0;
+        }
 
-        ArrayList<Move> allPossibleMoves = chessBoard.allPossibleMoves();
+        int standPat = evaluateBoard();
 
-        if(depth == 0 || chessBoard.allPossibleMoves().size() == 0){
-            return evaluateBoard(chessBoard);
+        if(ply >= MAX_PLY - 1){
+            return standPat;
         }
 
-        Move bestMove = allPossibleMoves.get(0);
-        int bestEvaluation = isMaximizing ? MIN_EVALUATION : MAX_EVALUATION;
+        boolean inCheck = position.isInCheck(isMaximizing);
 
-        if(isMaximizing){
-            bestEvaluation = MIN_EVALUATION;
-            bestMove = allPossibleMoves.get(0);
+        if(!inCheck){
+            if(isMaximizing){
+                if(standPat >= beta) { return beta; }
+                alpha = Math.max(alpha, standPat);
+            }
+            else {
+                if(standPat <= alpha) { return alpha; }
+                beta = Math.min(beta, standPat);
+            }
+        }
 
-            for (Move m : allPossibleMoves) {
-                movesChecked++;
-                ChessBoard boardState = new ChessBoard(chessBoard);
-                //System.out.println("\nPre:" + boardState.toString() + "\n");
-                chessBoard.setMove(m);
-                //System.out.println("Move:" + chessBoard.toString() + "\n");
-                int evaluation = minimax(chessBoard, depth - 1, false);
-                //chessBoard.revertMove(m);
-                chessBoard.setBoardState(boardState);
-                //System.out.println("Reset:" + chessBoard.toString() + "\n");
+        int start = ply * BitBoard.MAX_MOVES;
+        int end = inCheck ? position.generateMoves(moveStack, start) : position.generateCaptures(moveStack, start);
 
-                if(evaluation > bestEvaluation){
-                    bestEvaluation = evaluation;
-                    bestMove = m;
-                }
+        if(inCheck && end == start){
+            return evaluateNoMoves(ply);
+        }
+
+        sortCaptures(start, end);
+
+        for(int i = start; i < end; i++){
+            int move = moveStack[i];
+
+            if(!inCheck && Move.promotion(move) == BitBoard.EMPTY){
+
+                //delta pruning, even winning the piece for free can not reach the bound
+                int gain = Evaluation.value(capturedType(move)) + DELTA_MARGIN;
+                if(isMaximizing ? standPat + gain <= alpha : standPat - gain >= beta) { continue; }
+
+                //captures that lose material are not worth searching
+                if(position.see(move) < 0) { continue; }
+            }
+
+            movesChecked++;
+            long undo = position.makeMove(move);
+            int evaluation = quiescence(ply + 1, alpha, beta, !isMaximizing);
+            position.unmakeMove(move, undo);
+
+            if(isMaximizing && evaluation > alpha){
+                alpha = evaluation;
+            }
+            if(!isMaximizing && evaluation < beta){
+                beta = evaluation;
             }
 
-            // moveChosen = bestMove;
-            // return bestEvaluation;
+            if(alpha >= beta) { break; }
         }
-        else {
-            bestEvaluation = MAX_EVALUATION;
-            bestMove = allPossibleMoves.get(0);
 
-            for (Move m : allPossibleMoves) {
-                movesChecked++;
-                ChessBoard boardState = new ChessBoard(chessBoard);
-                //System.out.println("Pre:\n" + boardState.toString() + "\n");
-                chessBoard.setMove(m);
-                //System.out.println("Move:\n" + chessBoard.toString() + "\n");
-                int evaluation = minimax(chessBoard, depth - 1, true);
-                chessBoard.setBoardState(boardState);
-                //System.out.println("Reset:\n" + chessBoard.toString() + "\n");
+        return isMaximizing ? alpha : beta;
+    }
 
-                if(evaluation < bestEvaluation){
-                    bestEvaluation = evaluation;
-                    bestMove = m;
-                }
+    /**
+     * Sort moves for the search: the move that was best last time, then captures and
+     * promotions that do not lose material by MVV-LVA, then the killer moves of this
+     * ply, then quiet moves by history, then captures that lose material
+     * @param start index of the first move
+     * @param end index after the last move
+     * @param tableMove move from the transposition table, or NO_MOVE
+     * @param ply distance from the root, picks the killer moves
+     */
+    private void orderMoves(int start, int end, int tableMove, int ply){
+        int side = position.isWhiteToMove() ? 0 : 1;
+
+        for(int i = start; i < end; i++){
+            int move = moveStack[i];
+            int squares = move & Move.SQUARES_MASK;
+            int score;
+
+            if(tableMove != TranspositionTable.NO_MOVE && squares == tableMove){
+                score = Integer.MAX_VALUE;
+            }
+            else if(Move.isCapture(move) || Move.promotion(move) != BitBoard.EMPTY){
+                score = isLosingCapture(move) ? BAD_CAPTURE_SCORE + position.see(move)
+                    : GOOD_CAPTURE_SCORE + captureScore(move);
+            }
+            else if(squares == killers[ply * 2]){
+                score = KILLER_SCORE;
+            }
+            else if(squares == killers[ply * 2 + 1]){
+                score = KILLER_SCORE - 1;
+            }
+            else {
+                score = history[historyIndex(side, move)];
+            }
+            moveScores[i] = score;
+        }
+
+        for(int i = start + 1; i < end; i++){
+            int move = moveStack[i];
+            int score = moveScores[i];
+            int j = i - 1;
+
+            while(j >= start && moveScores[j] < score){
+                moveStack[j + 1] = moveStack[j];
+                moveScores[j + 1] = moveScores[j];
+                j--;
+            }
+            moveStack[j + 1] = move;
+            moveScores[j + 1] = score;
+        }
+    }
+
+    /**
+     * Check if a capture or promotion loses material. Taking a piece worth at least
+     * the attacker never does, so the exchange is only played out otherwise
+     * @param move packed capture or promotion
+     * @return true if the move loses material
+     */
+    private boolean isLosingCapture(int move){
+        int attacker = BitBoard.typeOf(position.getPiece(Move.from(move)));
+        int victim = capturedType(move);
+
+        if(victim != BitBoard.EMPTY && Evaluation.value(victim) >= Evaluation.value(attacker)){
+            return false;
+        }
+        return position.see(move) < 0;
+    }
+
+    /**
+     * Remember a quiet move that caused a cutoff as a killer for its ply and in the history
+     * @param move packed quiet move
+     * @param ply distance from the root
+     * @param depth depth left when the move was searched, deeper cutoffs count more
+     * @param isWhite true if white made the move
+     */
+    private void storeCutoff(int move, int ply, int depth, boolean isWhite){
+        int squares = move & Move.SQUARES_MASK;
+
+        if(killers[ply * 2] != squares){
+            killers[ply * 2 + 1] = killers[ply * 2];
+            killers[ply * 2] = squares;
+        }
+
+        int index = historyIndex(isWhite ? 0 : 1, move);
+        history[index] += depth * depth;
+
+        if(history[index] > MAX_HISTORY){
+            ageHistory();
+        }
+    }
+
+    /**
+     * Halve every history score so older cutoffs count for less
+     */
+    private void ageHistory(){
+        for(int i = 0; i < history.length; i++){
+            history[i] /= 2;
+        }
+    }
+
+    /**
+     * Index of a move in the history table
+     * @param side 0 for white, 1 for black
+     * @param move packed move
+     * @return index into history
+     */
+    private static int historyIndex(int side, int move){
+        return (side * BitBoard.SQUARES + Move.from(move)) * BitBoard.SQUARES + Move.to(move);
+    }
+
+    /**
+     * Get the type of the piece a move captures
+     * @param move packed move
+     * @return piece type, BitBoard.PAWN for en passant, BitBoard.EMPTY if not a capture
+     */
+    private int capturedType(int move){
+        if(Move.isEnPassant(move)){
+            return BitBoard.PAWN;
+        }
+
+        int captured = position.getPiece(Move.to(move));
+        return captured == BitBoard.EMPTY ? BitBoard.EMPTY : BitBoard.typeOf(captured);
+    }
+
+    /**
+     * Sort captures so the most valuable victims come first, taken by the least
+     * valuable attackers (MVV-LVA)
+     * @param start index of the first move
+     * @param end index after the last move
+     */
+    private void sortCaptures(int start, int end){
+        for(int i = start + 1; i < end; i++){
+            int move = moveStack[i];
+            int score = captureScore(move);
+            int j = i - 1;
+
+            while(j >= start && captureScore(moveStack[j]) < score){
+                moveStack[j + 1] = moveStack[j];
+                j--;
             }
+            moveStack[j + 1] = move;
+        }
+    }
+
+    /**
+     * MVV-LVA score of a move
+     * @param move packed move
+     * @return higher for more valuable victims and less valuable attackers
+     */
+    private int captureScore(int move){
+        int victim = capturedType(move);
+        int attacker = BitBoard.typeOf(position.getPiece(Move.from(move)));
+        int score = victim == BitBoard.EMPTY ? 0 : Evaluation.value(victim) * 8 - attacker;
 
-            // moveChosen = bestMove;
-            // return bestEvaluation;
+        if(Move.promotion(move) != BitBoard.EMPTY){
+            score += Evaluation.value(Move.promotion(move));
         }
+        return score;
+    }
+
+    /**
+     * Swap two moves in a move array
+     * @param moves move array
+     * @param i first index
+     * @param j second index
+     */
+    private static void swap(int[] moves, int i, int j){
+        int temp = moves[i];
+        moves[i] = moves[j];
+        moves[j] = temp;
+    }
+
+    /**
+     * Check if the search has used up its moves or time
+     * @return true if the search should stop
+     */
+    private boolean isOutOfBudget(){
 
-        if(this.depth == depth && startEvaluation == bestEvaluation){
-            bestMove = allPossibleMoves.get(new Random().nextInt(allPossibleMoves.size() - 1));
+        if(!stopped && maxMoves > 0 && movesChecked >= maxMoves){
+            stopped = true;
         }
 
-        moveChosen = bestMove;
-        return bestEvaluation;
+        if(!stopped && movesChecked % STOP_CHECK_INTERVAL == 0
+                && (aborted || deadline > 0 && System.currentTimeMillis() >= deadline)){
+            stopped = true;
+        }
+
+        return stopped;
     }
 
     /**
-     * Return the amount of moves that have been checked
+     * Return the amount of moves that have been checked, by every thread of the last search
      * @return movesChecked
      */
     public int getMovesChecked(){
         return this.movesChecked;
     }
 
+    /**
+     * Set the listener told about each finished iteration
+     * @param listener listener, null for none
+     */
+    public void setSearchListener(SearchListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Moves checked by this bot and its helpers, the helper counts may be slightly behind
+     * while they are searching
+     * @return moves checked
+     */
+    private long getTotalMovesChecked(){
+        long total = movesChecked;
+
+        for(ChessBot helper : helpers){
+            total += helper.movesChecked;
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of threads the bot searches on
+     * @return threads
+     */
+    public int getThreads(){
+        return helpers.length + 1;
+    }
+
+    /**
+     * Return the transposition table, for its size and hit counters
+     * @return table
+     */
+    public TranspositionTable getTranspositionTable(){
+        return this.table;
+    }
+
+    /**
+     * Return the deepest search that finished in the last call to findBestMove
+     * @return completedDepth
+     */
+    public int getCompletedDepth(){
+        return this.completedDepth;
+    }
+
     // private ArrayList<Move> allPossibleMoves(ChessBoard chessBoard){
 
     //     ArrayList<Move> moves = new ArrayList<>();
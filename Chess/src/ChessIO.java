@@ -1,10 +1,6 @@
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
-import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Scanner;
 
 /**
  * Chess Input/Output File
@@ -14,11 +10,24 @@ import java.util.Scanner;
 public class ChessIO {
     
     /**
-     * Reads a .pgn file (Chess game format), and returns an array of chess moves as strings
+     * Opens a .pgn file (Chess game format) to be read one token at a time
      * @param filename file to read
-     * @return ArrayList of chess moves
+     * @return reader of the file, before its first token
+     * @throws IllegalArgumentException if the file is not a .pgn file or can not be read
      */
-    public static ArrayList<String> readChessPGN(String filename) {
+    public static PgnMappedReader openChessPGN(String filename) {
+
+        checkFileType(filename);
+
+        return new PgnMappedReader(filename);
+    }
+
+    /**
+     * Check that a file has the .pgn extension, if it has an extension
+     * @param filename file to check
+     * @throws IllegalArgumentException if the file has another extension
+     */
+    private static void checkFileType(String filename) {
 
         int i = filename.lastIndexOf('.');
         if (i > 0) {
@@ -26,68 +35,8 @@ public class ChessIO {
                 throw new IllegalArgumentException("Incorrect file type.");
             }
         }
-
-        ArrayList<String> moves = new ArrayList<>();
-
-        Scanner file = null;
-        Scanner txtScanner = null;
-        Scanner moveScanner = null;
-
-        try {
-            file = new Scanner(new FileInputStream(filename));
-            file.useDelimiter("1. ");
-            file.next();
-            String fileTxt = "";
-
-            while (file.hasNextLine()) {
-                fileTxt += file.nextLine() + "\n";
-            }
-
-            String movesTxt = "";
-
-            txtScanner = new Scanner(fileTxt);
-            txtScanner.useDelimiter("\\d\\. |\\d\\d\\. |\\d\\d\\d\\. |\\d\\.\\.\\. |\\d\\d\\.\\.\\. |\\d\\d\\d\\.\\.\\. " +
-                    "|\\d\\.\\n|\\d\\d\\.\\n|\\d\\d\\d\\.\\n|\\d\\.\\.\\.\\n|\\d\\d\\.\\.\\.\\n|\\d\\d\\d\\.\\.\\.\\n");
-
-            while (txtScanner.hasNext()){
-                movesTxt += txtScanner.next();
-            }
-
-            movesTxt = movesTxt.replaceAll("\\{.*?}", "").replaceAll("\\$\\d\\d", "").replaceAll("\\$\\d", "");
-            movesTxt = movesTxt.replaceAll("\\(.*?}", "").replaceAll("\\(.*?\\)", "").replaceAll("\\(", "").replaceAll("\\)", "");
-
-
-            moveScanner = new Scanner(movesTxt);
-
-            while(moveScanner.hasNext()){
-                moves.add(moveScanner.next());
-            }
-
-        } catch (FileNotFoundException e) {
-            throw new IllegalArgumentException("Unable to read file: " + filename);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("error reading the file: " + filename);
-        } finally {
-            if(file != null)
-                file.close();
-            if(txtScanner != null)
-                txtScanner.close();
-            if(moveScanner != null)
-                moveScanner.close();
-        }
-
-//        for(int j = 0; j < moves.size(); j++){
-//            if(j % 2 == 0){
-//                System.out.printf("%d: %s", j / 2 + 1, moves.get(j));
-//            }
-//            else{
-//                System.out.printf(" %s\n", moves.get(j));
-//            }
-//        }
-//        System.out.println();
-
-        return moves;
     }
+
     public static void saveChessPGN(String filename, ArrayList<String[]> moves){
 
         try (PrintWriter print = new PrintWriter(filename)) {
@@ -2,6 +2,8 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
 import javax.swing.border.BevelBorder;
@@ -125,7 +127,7 @@ public class ChessUI extends JFrame implements ActionListener {
     /** Playing Computer Choices Options */
     private final String[] playComputerChoices = {"No", "Yes"};
     /** computer Level Choices Options */
-    private final String[] computerLevelChoices = {"0", "1", "2", "3"};
+    private final String[] computerLevelChoices = {"0", "1", "2", "3", "4", "5"};
     /** Watch Computer Turn by Turn Options */
     private final String[] watchComputerChoices = {"Yes", "No"};
     /** Load Button */
@@ -138,6 +140,18 @@ public class ChessUI extends JFrame implements ActionListener {
     private JButton disabledButton;
     /** Computer Bot Level */
     private int computerLevel;
+    /** Search for the computer's move running in the background, null when the computer is not thinking */
+    private SwingWorker<Move, String> computerWorker;
+    /** Counts discarded searches, a search that finishes after its board was replaced is not played */
+    private int searchGeneration;
+    /** Computer vs computer game paused by the stop button until play is pressed */
+    private boolean computerPaused;
+    /** Panel for the search progress and stop button */
+    private JPanel searchPanel;
+    /** Shows the depth, moves checked and best move while the computer thinks */
+    private JLabel searchLabel;
+    /** Stops the computer thinking and plays the best move found so far */
+    private JButton stopButton;
     /** RGB Value */
     private static final int RED_VALUE_1 = 225;
     /** RGB Value */
@@ -150,6 +164,18 @@ public class ChessUI extends JFrame implements ActionListener {
     private static final int GREEN_VALUE_2 = 48;
     /** RGB Value */
     private static final int BLUE_VALUE_2 = 27;
+    /** Light square color */
+    private static final Color LIGHT_SQUARE = new Color(RED_VALUE_1, GREEN_VALUE_1, BLUE_VALUE_1);
+    /** Dark square color */
+    private static final Color DARK_SQUARE = new Color(RED_VALUE_2, GREEN_VALUE_2, BLUE_VALUE_2);
+    /** Color of squares the chosen piece can move to */
+    private static final Color MOVE_COLOR = new Color(0, GREEN_VALUE_1, 0);
+    /** Color of a king in check */
+    private static final Color CHECK_COLOR = new Color(GREEN_VALUE_1, 0, 0);
+    /** Border of an unmarked square */
+    private static final LineBorder SQUARE_BORDER = new LineBorder(Color.BLACK, 1);
+    /** Squares whose color or border is marked, the only ones unmark has to reset */
+    private final boolean[][] marked = new boolean[GRID_SIZE][GRID_SIZE];
 
 
     /** ChessUI Contructor */
@@ -187,11 +213,28 @@ public class ChessUI extends JFrame implements ActionListener {
                 //if(!watchComputer){ return; }
 
                 continueGame = true; //Continue sim when user clicks the button
+                computerPaused = false;
                 computerSide = isWhiteTurn;
                 computerMove();
             }
         });
 
+        //Search progress and stop button above the board
+        searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchLabel = new JLabel(" ");
+        stopButton = new JButton("Stop");
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e){
+                //a computer vs computer game waits for play after the stopped move
+                computerPaused = playerSide == null;
+                chessBoard.stopComputerMove();
+            }
+        });
+        searchPanel.add(stopButton);
+        searchPanel.add(searchLabel);
+        chessPanel.add(searchPanel, BorderLayout.NORTH);
+
         settingsPanel = new JPanel(new BorderLayout());
         controlsPanel = new JPanel(new FlowLayout());
         ioPanel = new JPanel(new FlowLayout());
@@ -319,6 +362,12 @@ public class ChessUI extends JFrame implements ActionListener {
                     case "3":
                         computerLevel = 3;
                         break;    
+                    case "4":
+                        computerLevel = 4;
+                        break;
+                    case "5":
+                        computerLevel = 5;
+                        break;
                     default:
                         break;
                 }
@@ -471,9 +520,7 @@ public class ChessUI extends JFrame implements ActionListener {
                 buttons[row][col] = new JButton();
 
                 //if piece at [row][col] has image, set the button to have an ImageIcon
-                if(chessBoard.getImage(row, col) != null){
-                    buttons[row][col].setIcon(new ImageIcon(chessBoard.getImage(row, col)));
-                }
+                buttons[row][col].setIcon(chessBoard.getIcon(row, col));
                 //Align icon to center
                 buttons[row][col].setHorizontalTextPosition(SwingConstants.CENTER);
                 //buttons[row][col].setFont(new Font("Default", Font.BOLD, PIECE_TXT_SIZE));
@@ -549,10 +596,10 @@ public class ChessUI extends JFrame implements ActionListener {
         b = new Bishop(0, 0, isWhiteTurn);
         n = new Knight(0, 0, isWhiteTurn);
 
-        queenItem = new JMenuItem(new ImageIcon(q.getImage()));    
-        rookItem = new JMenuItem(new ImageIcon(r.getImage()));
-        bishopItem = new JMenuItem(new ImageIcon(b.getImage()));
-        knightItem = new JMenuItem(new ImageIcon(n.getImage()));
+        queenItem = new JMenuItem(q.getIcon());    
+        rookItem = new JMenuItem(r.getIcon());
+        bishopItem = new JMenuItem(b.getIcon());
+        knightItem = new JMenuItem(n.getIcon());
 
         //add event to pop up menu items
         queenItem.addActionListener(new ActionListener() {
@@ -618,6 +665,8 @@ public class ChessUI extends JFrame implements ActionListener {
      */
     public void actionPerformed(ActionEvent e) {
 
+        //the board can not be used while the computer is thinking
+        if(computerWorker != null) { return; }
 
         //Iterates 2D buttons array to find the index for the pressed button
         for(int row = 0; row < GRID_SIZE; row++){
@@ -735,6 +784,7 @@ public class ChessUI extends JFrame implements ActionListener {
         //the selected button is given a gray background and a lowered bevel border
         buttons[startRow][startCol].setBackground(Color.GRAY);
         buttons[startRow][startCol].setBorder(new BevelBorder(BevelBorder.LOWERED));
+        marked[startRow][startCol] = true;
 
         if(!hasValidMove) { return; }
 
@@ -749,8 +799,8 @@ public class ChessUI extends JFrame implements ActionListener {
                     (startRow != row || startCol != col)){
 
                     buttons[row][col].setBorder(new BevelBorder(BevelBorder.RAISED));
-                    buttons[row][col].setBackground(
-                        new Color(0, GREEN_VALUE_1, 0));                    
+                    buttons[row][col].setBackground(MOVE_COLOR);
+                    marked[row][col] = true;
                 }
             }
         }
@@ -763,29 +813,31 @@ public class ChessUI extends JFrame implements ActionListener {
 
         //next player can now choose their piece to move
         pieceChosen = false;
-        //resets the background colors/borders for all buttons
-        boolean background = true;
+        //resets the background colors/borders of the marked buttons only
         for(int row = 0; row < GRID_SIZE; row++){
 
             for(int col = 0; col < GRID_SIZE; col++){
 
-                if(background){
-                    buttons[row][col].setBackground(
-                        new Color(RED_VALUE_1, GREEN_VALUE_1, BLUE_VALUE_1));
-                }
-                else {
-                    buttons[row][col].setBackground(
-                        new Color(RED_VALUE_2, GREEN_VALUE_2, BLUE_VALUE_2));
+                if(marked[row][col]){
+                    resetSquare(row, col);
                 }
-                background = !background;
-                buttons[row][col].setBorder(new LineBorder(Color.BLACK, 1));              
             }
-            background = !background;
         }
 
         isCheck();
     }
 
+    /**
+     * Give a square its board color and plain border
+     * @param row row
+     * @param col col
+     */
+    private void resetSquare(int row, int col){
+        buttons[row][col].setBackground((row + col) % 2 == 0 ? LIGHT_SQUARE : DARK_SQUARE);
+        buttons[row][col].setBorder(SQUARE_BORDER);
+        marked[row][col] = false;
+    }
+
     private void movePiece(int row, int col){
 
         if(chessBoard.canPromote(selectPieceRow, selectPieceCol, row, isWhiteTurn)){
@@ -795,10 +847,10 @@ public class ChessUI extends JFrame implements ActionListener {
             b = new Bishop(0, 0, isWhiteTurn);
             n = new Knight(0, 0, isWhiteTurn);
 
-            queenItem.setIcon(new ImageIcon(q.getImage())); 
-            rookItem.setIcon(new ImageIcon(r.getImage()));
-            bishopItem.setIcon(new ImageIcon(b.getImage()));
-            knightItem.setIcon(new ImageIcon(n.getImage()));
+            queenItem.setIcon(q.getIcon()); 
+            rookItem.setIcon(r.getIcon());
+            bishopItem.setIcon(b.getIcon());
+            knightItem.setIcon(n.getIcon());
 
             waitForPromote = true;
             promoteMenu.show(this, selectPieceCol * 50, selectPieceRow * 50);
@@ -827,20 +879,144 @@ public class ChessUI extends JFrame implements ActionListener {
 
     private void computerMove(){
 
-        if(waitForPromote) { return; }
+        if(waitForPromote || computerWorker != null) { return; }
 
         if((Boolean)isWhiteTurn != computerSide && playerSide != null) { return; }
 
         if(!playComputer || !canPlay || (!continueGame && watchComputer && playerSide == null)) { return; }
 
+        if(computerPaused && playerSide == null) { return; }
+
+        //level 0 moves at random without searching, so it does not need a background thread
+        if(computerLevel == 0){
+            try {
+                chessBoard.computerMove(computerSide, computerLevel);
+            } catch (IllegalArgumentException e) {
+                computerStaleMate();
+            }
+
+            finishComputerMove();
+            return;
+        }
+
+        startComputerSearch();
+    }
+
+    /**
+     * Search for the computer's move on a background thread, showing its progress and
+     * playing the move on the event thread when the search finishes
+     */
+    private void startComputerSearch(){
+
+        int generation = searchGeneration;
+        SearchLimits limits = ChessBoard.levelLimits(computerLevel);
+        ChessBoard searchBoard = chessBoard;
+
+        //copy of the position and its legal moves for writing the best move, only used by the search thread
+        BitBoard root = new BitBoard(chessBoard.getPosition());
+        int[] rootMoves = new int[BitBoard.MAX_MOVES];
+        int rootCount = root.generateMoves(rootMoves, 0);
+
+        //the bot is made before the search starts, so stop works from the first moment
+        searchBoard.prepareComputerMove();
+
+        stopButton.setEnabled(true);
+        searchLabel.setText("Thinking...");
+
+        computerWorker = new SwingWorker<Move, String>() {
+
+            protected Move doInBackground(){
+                return searchBoard.findComputerMove(limits, (depth, nodes, move) ->
+                    publish(String.format("Depth %d  Nodes %,d  Best %s", depth, nodes, SanWriter.toSan(root, move.getEncoded(), rootMoves, rootCount))));
+            }
+
+            protected void process(List<String> progress){
+                searchLabel.setText(progress.get(progress.size() - 1));
+            }
+
+            protected void done(){
+                computerWorker = null;
+                stopButton.setEnabled(false);
+
+                //the board was reset or changed while the computer was thinking
+                if(generation != searchGeneration){
+                    searchLabel.setText(" ");
+                    SwingUtilities.invokeLater(() -> computerMove());
+                    return;
+                }
+
+                try {
+                    Move move = get();
+
+                    if(move == null){
+                        searchLabel.setText(" ");
+                        endComputerGame();
+                    }
+                    else {
+                        applyComputerMove(move);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    searchLabel.setText("Search failed: " + e.getMessage());
+                }
+            }
+        };
+
+        computerWorker.execute();
+    }
+
+    /**
+     * Stop a search whose board is being replaced, its move is not played
+     */
+    private void discardComputerSearch(){
+
+        if(computerWorker == null) { return; }
+
+        searchGeneration++;
+        chessBoard.stopComputerMove();
+    }
+
+    /**
+     * Play the move the computer found
+     * @param move move to play
+     */
+    private void applyComputerMove(Move move){
         try {
-            chessBoard.computerMove(computerSide, computerLevel);
+            chessBoard.makeComputerMove(move);
         } catch (IllegalArgumentException e) {
-            isStaleMate = true;
-            isStaleMate();
-            isStaleMate = false;
-            chessBoard.resetSimTurns();
+            computerStaleMate();
+        }
+
+        finishComputerMove();
+    }
+
+    /**
+     * End the game when the computer has no legal move, as a checkmate if it is in check
+     * and otherwise as a stalemate
+     */
+    private void endComputerGame(){
+        if(chessBoard.isCheckMate(computerSide)){
+            gameWin(!computerSide);
+        }
+        else {
+            computerStaleMate();
         }
+    }
+
+    /**
+     * End a computer game that has gone on too long as a stalemate
+     */
+    private void computerStaleMate(){
+        isStaleMate = true;
+        isStaleMate();
+        isStaleMate = false;
+        chessBoard.resetSimTurns();
+    }
+
+    /**
+     * Update the board after the computer moves, and start the next move of a
+     * computer vs computer game
+     */
+    private void finishComputerMove(){
 
         // if(playerSide == null){
         //     chessBoard.computerMove(!computerSide, 0);
@@ -852,9 +1028,10 @@ public class ChessUI extends JFrame implements ActionListener {
             continueGame = false;
         }
 
+        //the next move starts as a new event instead of recursing, so long games do not grow the stack
         if(playerSide == null && !gameEnd){
             computerSide = isWhiteTurn;
-            computerMove();
+            SwingUtilities.invokeLater(() -> computerMove());
         }
 
         if(gameEnd && canPlay){
@@ -868,7 +1045,7 @@ public class ChessUI extends JFrame implements ActionListener {
         if(gameEnd) { return; }
 
         //Update board after moving
-        updateBoard();
+        updateMoveSquares();
         
         //unmarks the marked spaces for a new turn
         unmark();    
@@ -912,6 +1089,7 @@ public class ChessUI extends JFrame implements ActionListener {
     }
 
     public void updateInstance(int row, int col){
+        discardComputerSearch();
         chessBoard = ChessBoard.getInstance();
         this.isWhiteTurn = chessBoard.isWhiteTurn();
         updateBoard();
@@ -924,19 +1102,55 @@ public class ChessUI extends JFrame implements ActionListener {
         disabledButton.setEnabled(false);
     }
 
+    /**
+     * Update only the squares the last move changed: where the piece moved from and to,
+     * and the rook of a castle or the pawn taken en passant
+     */
+    private void updateMoveSquares() {
+        Move move = ChessBoard.getLastMove();
+
+        if(move == null){
+            updateBoard();
+            return;
+        }
+
+        int fromRow = move.getStartRow();
+        int fromCol = move.getStartCol();
+        int toCol = move.getEndCol();
+
+        updateSquare(fromRow, fromCol);
+        updateSquare(move.getEndRow(), toCol);
+
+        //the pawn taken en passant is beside the pawn's starting square
+        updateSquare(fromRow, toCol);
+
+        //castling moves the rook from its corner to the square the king passed over
+        if(Math.abs(toCol - fromCol) == 2 && fromRow == move.getEndRow()){
+            updateSquare(fromRow, toCol > fromCol ? GRID_SIZE - 1 : 0);
+            updateSquare(fromRow, (fromCol + toCol) / 2);
+        }
+    }
+
+    /**
+     * Show the piece on a square if its icon changed. Icons are cached and shared,
+     * so a square shows the right piece exactly when its icon is the same object
+     * @param row row
+     * @param col col
+     */
+    private void updateSquare(int row, int col) {
+        Icon icon = chessBoard.getIcon(row, col);
+
+        if(buttons[row][col].getIcon() != icon){
+            buttons[row][col].setIcon(icon);
+        }
+    }
+
     private void updateBoard() {
-        //when moving a piece, re-do all icons in grid
+        //after going to another board, re-do the icons that changed
         for(int gridRow = 0; gridRow < GRID_SIZE; gridRow++){
 
             for(int gridCol = 0; gridCol < GRID_SIZE; gridCol++){
-
-                if(chessBoard.getImage(gridRow, gridCol) != null){
-                    buttons[gridRow][gridCol].setIcon(
-                        new ImageIcon(chessBoard.getImage(gridRow, gridCol)));
-                }
-                else {
-                    buttons[gridRow][gridCol].setIcon(null);
-                }
+                updateSquare(gridRow, gridCol);
             }
             // if(chessBoard.getImage(selectPieceRow, selectPieceCol) != null){
             //     buttons[row][col].setIcon(
@@ -983,9 +1197,8 @@ public class ChessUI extends JFrame implements ActionListener {
             kingCol = chessBoard.getKingCol(true);
 
             //makes the white kings background red
-            buttons[kingRow][kingCol].setBackground(
-                new Color(GREEN_VALUE_1, 0, 0)//RED COLOR 
-            );
+            buttons[kingRow][kingCol].setBackground(CHECK_COLOR);
+            marked[kingRow][kingCol] = true;
         }
 
         if(chessBoard.isCheck(false)){//check black king is in check
@@ -995,9 +1208,8 @@ public class ChessUI extends JFrame implements ActionListener {
             kingCol = chessBoard.getKingCol(false);
 
             //makes the black kings background red
-            buttons[kingRow][kingCol].setBackground(
-                new Color(GREEN_VALUE_1, 0, 0)//RED COLOR 
-            );
+            buttons[kingRow][kingCol].setBackground(CHECK_COLOR);
+            marked[kingRow][kingCol] = true;
         }
     }
 
@@ -1026,7 +1238,7 @@ public class ChessUI extends JFrame implements ActionListener {
         promote = false;
 
         chessBoard.promote(p.getName(), promotionRow, promotionCol);
-        buttons[promotionRow][promotionCol].setIcon(new ImageIcon(p.getImage()));
+        buttons[promotionRow][promotionCol].setIcon(p.getIcon());
 
         movesButtons.get(ChessBoard.getRound() - 2)[1].setText(ChessBoard.getMoveString(ChessBoard.getRound() - 2, 1));
         movesButtons.get(ChessBoard.getRound() - 2)[1].setMargin(new Insets(0, 0, 0, 0));
@@ -1047,44 +1259,26 @@ public class ChessUI extends JFrame implements ActionListener {
         canPlay = true;
 
         //makes new chessboard instance
+        discardComputerSearch();
         chessBoard = ChessBoard.resetChessBoard();
         decrementMovesGrid();
 
         movesButtons.get(0)[0].setText("");
         movesButtons.get(0)[1].setText("");
 
-        boolean background = true;
         for(int row = 0; row < GRID_SIZE; row++){
 
             for(int col = 0; col < GRID_SIZE; col++){
 
-                //if piece at [row][col] has image, set the button to have an ImageIcon
-                if(chessBoard.getImage(row, col) != null){
-                    buttons[row][col].setIcon(new ImageIcon(chessBoard.getImage(row, col)));
-                }
-                else { //reset images
-                    buttons[row][col].setIcon(new ImageIcon());
-                }
+                //if piece at [row][col] has image, set the button to have an ImageIcon, empty squares are reset
+                buttons[row][col].setIcon(chessBoard.getIcon(row, col));
                 //Align icon to center
                 buttons[row][col].setHorizontalTextPosition(SwingConstants.CENTER);
-                //Add simple line border to each button
-                buttons[row][col].setBorder(new LineBorder(Color.BLACK, 1));
                 buttons[row][col].setFocusPainted(false); // remove focus box
 
-                //every other button is set to a color
-                if(background){
-                    buttons[row][col].setBackground(
-                        new Color(RED_VALUE_1, GREEN_VALUE_1, BLUE_VALUE_1));
-                }
-                else {
-                    buttons[row][col].setBackground(
-                        new Color(RED_VALUE_2, GREEN_VALUE_2, BLUE_VALUE_2));
-                }
-
-                background = !background;
+                //every other button is set to a color with a simple line border
+                resetSquare(row, col);
             }
-
-            background = !background;
         }
 
         if(playerSide == null){
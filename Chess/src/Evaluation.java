@@ -0,0 +1,172 @@
+/**
+ * Evaluation Tables
+ * Material values and piece-square tables for the middlegame and endgame, combined by
+ * game phase into a tapered score. BitBoard adds and removes these values as pieces are
+ * put on and taken off squares, so the score is always up to date.
+ *
+ * Scores are in centipawns from white's side. Tables are written from white's side with
+ * a8 first, black pieces use the square mirrored top to bottom
+ *
+ * @author David Martinez
+ */
+public class Evaluation {
+
+    /** Phase when every knight, bishop, rook and queen is on the board */
+    public static final int MAX_PHASE = 24;
+
+    /** Middlegame piece values, indexed by piece type */
+    private static final int[] MG_VALUES = {100, 320, 330, 500, 900, 0};
+
+    /** Endgame piece values, indexed by piece type */
+    private static final int[] EG_VALUES = {120, 300, 320, 530, 940, 0};
+
+    /** Phase each piece type is worth, indexed by piece type */
+    private static final int[] PHASE_VALUES = {0, 1, 1, 2, 4, 0};
+
+    /** Pawns: push the centre pawns, keep the pawns in front of a castled king */
+    private static final int[] PAWN_MG = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    /** Pawns in the endgame: the closer to promoting the better */
+    private static final int[] PAWN_EG = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         90,  90,  90,  90,  90,  90,  90,  90,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    /** Knights: strong in the centre, weak on the edge */
+    private static final int[] KNIGHT = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    /** Bishops: avoid corners and edges, like long diagonals */
+    private static final int[] BISHOP = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    /** Rooks: seventh row, central files */
+    private static final int[] ROOK = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0
+    };
+
+    /** Queens: slightly towards the centre */
+    private static final int[] QUEEN = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+
+    /** King in the middlegame: stay castled behind the pawns */
+    private static final int[] KING_MG = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20
+    };
+
+    /** King in the endgame: come to the centre */
+    private static final int[] KING_EG = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    /** Middlegame value plus table for each piece code on each square, negative for black */
+    static final int[][] MG = new int[BitBoard.PIECE_CODES][BitBoard.SQUARES];
+
+    /** Endgame value plus table for each piece code on each square, negative for black */
+    static final int[][] EG = new int[BitBoard.PIECE_CODES][BitBoard.SQUARES];
+
+    /** Phase each piece code is worth */
+    static final int[] PHASE = new int[BitBoard.PIECE_CODES];
+
+    static {
+        int[][] mgTables = {PAWN_MG, KNIGHT, BISHOP, ROOK, QUEEN, KING_MG};
+        int[][] egTables = {PAWN_EG, KNIGHT, BISHOP, ROOK, QUEEN, KING_EG};
+
+        for(int type = BitBoard.PAWN; type <= BitBoard.KING; type++){
+            int black = type + BitBoard.BLACK_OFFSET;
+            PHASE[type] = PHASE_VALUES[type];
+            PHASE[black] = PHASE_VALUES[type];
+
+            for(int square = 0; square < BitBoard.SQUARES; square++){
+                MG[type][square] = MG_VALUES[type] + mgTables[type][square];
+                EG[type][square] = EG_VALUES[type] + egTables[type][square];
+
+                //flip the row for black
+                MG[black][square] = -(MG_VALUES[type] + mgTables[type][square ^ 56]);
+                EG[black][square] = -(EG_VALUES[type] + egTables[type][square ^ 56]);
+            }
+        }
+    }
+
+    /**
+     * Blend middlegame and endgame scores by phase
+     * @param mg middlegame score
+     * @param eg endgame score
+     * @param phase game phase, MAX_PHASE or more is all middlegame, 0 is all endgame
+     * @return tapered score
+     */
+    public static int taper(int mg, int eg, int phase){
+        int mgPhase = Math.min(phase, MAX_PHASE);
+        return (mg * mgPhase + eg * (MAX_PHASE - mgPhase)) / MAX_PHASE;
+    }
+
+    /**
+     * Get the middlegame material value of a piece type, used for exchange and delta
+     * calculations
+     * @param type piece type
+     * @return value in centipawns, 0 for the king
+     */
+    public static int value(int type){
+        return MG_VALUES[type];
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Game History
+ * Every move of the game as a packed int, plus a copy of the board every
+ * SNAPSHOT_INTERVAL moves. The board after any move is rebuilt by copying the
+ * nearest snapshot before it and replaying at most SNAPSHOT_INTERVAL - 1 moves,
+ * so a long game keeps a few boards instead of one per move
+ *
+ * @author David Martinez
+ */
+public class GameHistory {
+
+    /** Moves between board snapshots */
+    public static final int SNAPSHOT_INTERVAL = 16;
+
+    /** Packed moves in the order they were played */
+    private int[] moves = new int[SNAPSHOT_INTERVAL * 8];
+
+    /** Number of moves played */
+    private int size;
+
+    /** Board after 0, SNAPSHOT_INTERVAL, 2 * SNAPSHOT_INTERVAL... moves */
+    private final ArrayList<ChessBoard> snapshots = new ArrayList<>();
+
+    /**
+     * Creates a history starting from a board
+     * @param start board before the first move, copied
+     */
+    public GameHistory(ChessBoard start){
+        snapshots.add(new ChessBoard(start));
+    }
+
+    /**
+     * Get the number of moves played
+     * @return moves played
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Get the last move played
+     * @return packed move, Move.NO_MOVE if no moves were played
+     */
+    public int lastMove(){
+        return size == 0 ? Move.NO_MOVE : moves[size - 1];
+    }
+
+    /**
+     * Add a move to the end of the history
+     * @param move move that was played, with its promotion if any
+     * @param after board after the move, copied if a snapshot is due
+     */
+    public void add(Move move, ChessBoard after){
+        if(size == moves.length){
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+
+        moves[size++] = move.getEncoded();
+
+        if(size % SNAPSHOT_INTERVAL == 0){
+            snapshots.add(new ChessBoard(after));
+        }
+    }
+
+    /**
+     * Set the promotion of the last move, chosen after the move was added
+     * @param promotion piece name to promote to ("Q", "R", "B" or "N")
+     * @param after board after the promotion, copied if the move has a snapshot
+     * @throws IllegalArgumentException if there are no moves or promotion is invalid
+     */
+    public void setLastPromotion(String promotion, ChessBoard after){
+        if(size == 0){
+            throw new IllegalArgumentException("No move to promote");
+        }
+
+        int move = moves[size - 1];
+        moves[size - 1] = Move.encode(Move.from(move), Move.to(move), BitBoard.promotionType(promotion), 0);
+
+        if(size % SNAPSHOT_INTERVAL == 0){
+            snapshots.set(size / SNAPSHOT_INTERVAL, new ChessBoard(after));
+        }
+    }
+
+    /**
+     * Remove every move after a point, so the game can go on differently from there
+     * @param plies number of moves to keep
+     * @throws IllegalArgumentException if plies is negative or more than the moves played
+     */
+    public void truncate(int plies){
+        if(plies < 0 || plies > size){
+            throw new IllegalArgumentException("Invalid number of moves");
+        }
+
+        size = plies;
+
+        while(snapshots.size() > plies / SNAPSHOT_INTERVAL + 1){
+            snapshots.remove(snapshots.size() - 1);
+        }
+    }
+
+    /**
+     * Rebuild the board after a number of moves
+     * @param plies number of moves played on the board
+     * @return new board, not shared with the history
+     * @throws IllegalArgumentException if plies is negative or more than the moves played
+     */
+    public ChessBoard boardAt(int plies){
+        if(plies < 0 || plies > size){
+            throw new IllegalArgumentException("Invalid number of moves");
+        }
+
+        int snapshot = plies / SNAPSHOT_INTERVAL;
+        ChessBoard board = new ChessBoard(snapshots.get(snapshot));
+
+        for(int ply = snapshot * SNAPSHOT_INTERVAL; ply < plies; ply++){
+            board.setMove(new Move(moves[ply]));
+        }
+
+        return board;
+    }
+}
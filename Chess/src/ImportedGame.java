@@ -0,0 +1,90 @@
+import java.util.Map;
+
+/**
+ * Imported Game
+ * The result of replaying one game of a .pgn file: its tags, the legal moves that
+ * were replayed as packed moves, and the error that stopped the replay if there was one
+ *
+ * @author David Martinez
+ */
+public class ImportedGame {
+
+    /** Index of the game in the file, starting at 0 */
+    private final int index;
+
+    /** Tag pairs of the game */
+    private final Map<String, String> tags;
+
+    /** Packed moves replayed before the end of the game or the error */
+    private final int[] moves;
+
+    /** Result of the game, null if it had none */
+    private final String result;
+
+    /** Why the replay stopped, null if every move was legal */
+    private final String error;
+
+    /**
+     * Creates an imported game
+     * @param index index of the game in the file
+     * @param tags tag pairs of the game
+     * @param moves packed moves replayed
+     * @param result result of the game, null if it had none
+     * @param error why the replay stopped, null if every move was legal
+     */
+    public ImportedGame(int index, Map<String, String> tags, int[] moves, String result, String error){
+        this.index = index;
+        this.tags = tags;
+        this.moves = moves;
+        this.result = result;
+        this.error = error;
+    }
+
+    /**
+     * Getter for index
+     * @return index of the game in the file, starting at 0
+     */
+    public int getIndex(){
+        return index;
+    }
+
+    /**
+     * Getter for tags
+     * @return tag pairs of the game
+     */
+    public Map<String, String> getTags(){
+        return tags;
+    }
+
+    /**
+     * Getter for moves
+     * @return packed moves replayed, up to the move that failed if there was an error
+     */
+    public int[] getMoves(){
+        return moves;
+    }
+
+    /**
+     * Getter for result
+     * @return result of the game, null if it had none
+     */
+    public String getResult(){
+        return result;
+    }
+
+    /**
+     * Getter for error
+     * @return why the replay stopped, null if every move was legal
+     */
+    public String getError(){
+        return error;
+    }
+
+    /**
+     * Check if every move of the game was replayed
+     * @return true if there was no error
+     */
+    public boolean isValid(){
+        return error == null;
+    }
+}
@@ -9,10 +9,10 @@ public class King extends Piece {
     private static final String NAME = "K";
 
     /** White Piece File Path */
-    private static final String WHITE_IMG_PATH = "src/resources/WhiteKing.png";
+    static final String WHITE_IMG_PATH = "src/resources/WhiteKing.png";
 
     /** Black Piece File Path */
-    private static final String BLACK_IMG_PATH = "src/resources/BlackKing.png";
+    static final String BLACK_IMG_PATH = "src/resources/BlackKing.png";
 
     /**
      * Bishop Constructor
@@ -23,7 +23,7 @@ public class King extends Piece {
      * @throws IllegalArgumentException if row or col is out of bounds
      */
     public King(int row, int col, boolean isWhitePiece){
-        super(row, col, isWhitePiece, NAME, WHITE_IMG_PATH, BLACK_IMG_PATH);
+        super(row, col, isWhitePiece, NAME);
     }
 
     public King(King other){
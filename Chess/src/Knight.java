@@ -9,10 +9,10 @@ public class Knight extends Piece {
     private static final String NAME = "N";
 
     /** White Piece File Path */
-    private static final String WHITE_IMG_PATH = "src/resources/WhiteKnight.png";
+    static final String WHITE_IMG_PATH = "src/resources/WhiteKnight.png";
 
     /** Black Piece File Path */
-    private static final String BLACK_IMG_PATH = "src/resources/BlackKnight.png";
+    static final String BLACK_IMG_PATH = "src/resources/BlackKnight.png";
 
     /**
      * Knight Constructor
@@ -23,7 +23,7 @@ public class Knight extends Piece {
      * @throws IllegalArgumentException if row or col is out of bounds
      */
     public Knight(int row, int col, boolean isWhitePiece){
-        super(row, col, isWhitePiece, NAME, WHITE_IMG_PATH, BLACK_IMG_PATH);
+        super(row, col, isWhitePiece, NAME);
     }
 
     public Knight(Knight other){
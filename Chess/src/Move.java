@@ -1,20 +1,33 @@
 /**
  * Move Class For Storing Chess Moves
+ * The engine passes moves around as packed ints so generating them allocates nothing,
+ * this class is an object view of a packed move for the GUI and file reading
+ *
+ * Packed layout: bits 0-5 start square, bits 6-11 end square, bits 12-14 promotion
+ * piece type + 1, bit 15 capture, bit 16 castle, bit 17 en passant.
+ * Squares are row * 8 + col
+ *
  * @author David Martinez
  */
 public class Move {
-    
-    /** Move Starting Row */
-    private int startRow;
 
-    /** Move Starting Col */
-    private int startCol;
+    /** Packed value for no move */
+    public static final int NO_MOVE = 0;
 
-    /** Move Ending Row */
-    private int endRow;
+    /** Flag for a move that captures a piece */
+    public static final int CAPTURE = 1 << 15;
 
-    /** Move Ending COl */
-    private int endCol;
+    /** Flag for a castling king move */
+    public static final int CASTLE = 1 << 16;
+
+    /** Flag for an en passant capture, also has the capture flag */
+    public static final int EN_PASSANT = 1 << 17;
+
+    /** Mask of the start square, end square and promotion bits, enough to tell moves in a position apart */
+    public static final int SQUARES_MASK = 0x7FFF;
+
+    /** Packed move */
+    private final int move;
 
     /**
      * Move Constructor
@@ -24,10 +37,102 @@ public class Move {
      * @param endCol end col
      */
     public Move(int startRow, int startCol, int endRow, int endCol){
-        this.startRow = startRow;
-        this.startCol = startCol;
-        this.endRow = endRow;
-        this.endCol = endCol;
+        this(startRow, startCol, endRow, endCol, null);
+    }
+
+    /**
+     * Move Constructor For Pawn Promotions
+     * @param startRow start row
+     * @param startCol start col
+     * @param endRow end row
+     * @param endCol end col
+     * @param promotion piece name to promote to ("Q", "R", "B" or "N"), null if not a promotion
+     */
+    public Move(int startRow, int startCol, int endRow, int endCol, String promotion){
+        this(encode(BitBoard.square(startRow, startCol), BitBoard.square(endRow, endCol),
+            BitBoard.promotionType(promotion), 0));
+    }
+
+    /**
+     * Move Constructor From A Packed Move
+     * @param move packed move
+     */
+    public Move(int move){
+        this.move = move;
+    }
+
+    /**
+     * Pack a move into an int
+     * @param from start square
+     * @param to end square
+     * @param promotion piece type to promote to, BitBoard.EMPTY if not a promotion
+     * @param flags CAPTURE, CASTLE and EN_PASSANT flags
+     * @return packed move
+     */
+    public static int encode(int from, int to, int promotion, int flags){
+        return from | to << 6 | (promotion + 1) << 12 | flags;
+    }
+
+    /**
+     * Get the start square of a packed move
+     * @param move packed move
+     * @return start square
+     */
+    public static int from(int move){
+        return move & 0x3F;
+    }
+
+    /**
+     * Get the end square of a packed move
+     * @param move packed move
+     * @return end square
+     */
+    public static int to(int move){
+        return move >>> 6 & 0x3F;
+    }
+
+    /**
+     * Get the promotion of a packed move
+     * @param move packed move
+     * @return piece type to promote to, BitBoard.EMPTY if not a promotion
+     */
+    public static int promotion(int move){
+        return (move >>> 12 & 0x7) - 1;
+    }
+
+    /**
+     * Check if a packed move captures a piece
+     * @param move packed move
+     * @return true if a capture
+     */
+    public static boolean isCapture(int move){
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * Check if a packed move is castling
+     * @param move packed move
+     * @return true if castling
+     */
+    public static boolean isCastle(int move){
+        return (move & CASTLE) != 0;
+    }
+
+    /**
+     * Check if a packed move is an en passant capture
+     * @param move packed move
+     * @return true if en passant
+     */
+    public static boolean isEnPassant(int move){
+        return (move & EN_PASSANT) != 0;
+    }
+
+    /**
+     * Getter For the packed move
+     * @return packed move
+     */
+    public int getEncoded() {
+        return move;
     }
 
     /**
@@ -35,7 +140,7 @@ public class Move {
      * @return startRow
      */
     public int getStartRow() {
-        return startRow;
+        return from(move) / 8;
     }
 
     /**
@@ -43,7 +148,7 @@ public class Move {
      * @return startCol
      */
     public int getStartCol() {
-        return startCol;
+        return from(move) % 8;
     }
 
     /**
@@ -51,7 +156,7 @@ public class Move {
      * @return endRow
      */
     public int getEndRow() {
-        return endRow;
+        return to(move) / 8;
     }
 
     /**
@@ -59,13 +164,33 @@ public class Move {
      * @return endCol
      */
     public int getEndCol() {
-        return endCol;
+        return to(move) % 8;
+    }
+
+    /**
+     * Getter for promotion
+     * @return promotion piece name, null if not a promotion
+     */
+    public String getPromotion() {
+        switch(promotion(move)){
+            case BitBoard.QUEEN:
+                return "Q";
+            case BitBoard.ROOK:
+                return "R";
+            case BitBoard.BISHOP:
+                return "B";
+            case BitBoard.KNIGHT:
+                return "N";
+            default:
+                return null;
+        }
     }
-    
+
     /** Convert fields in move to a string
      * @return formatted string StartRow:%d StartCol:%d EndRow:%d EndCol:%d
      */
     public String toString(){
-        return String.format("StartRow:%d\nStartCol:%d\nEndRow:%d\nEndCol:%d\n", startRow, startCol, endRow, endCol);
+        return String.format("StartRow:%d\nStartCol:%d\nEndRow:%d\nEndCol:%d\n", getStartRow(), getStartCol(),
+            getEndRow(), getEndCol());
     }
 }
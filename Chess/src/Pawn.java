@@ -9,10 +9,10 @@ public class Pawn extends Piece {
     private static final String NAME = "P";
 
     /** White Piece File Path */
-    private static final String WHITE_IMG_PATH = "src/resources/WhitePawn.png";
+    static final String WHITE_IMG_PATH = "src/resources/WhitePawn.png";
 
     /** Black Piece File Path */
-    private static final String BLACK_IMG_PATH = "src/resources/BlackPawn.png";
+    static final String BLACK_IMG_PATH = "src/resources/BlackPawn.png";
 
     /** Starting Pawn Row */
     private int initialRow;
@@ -29,7 +29,7 @@ public class Pawn extends Piece {
      * @throws IllegalArgumentException if row or col is out of bounds
      */
     public Pawn(int row, int col, boolean isWhitePiece){
-        super(row, col, isWhitePiece, NAME, WHITE_IMG_PATH, BLACK_IMG_PATH);
+        super(row, col, isWhitePiece, NAME);
         this.initialRow = row;
         this.canEnPassant = false;
     }
@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft Move Generation Tester
+ * Counts the leaf nodes of the move tree to a fixed depth and compares them with
+ * published results, and reports how fast the move generator is
+ *
+ * Usage: Perft                          runs the standard positions
+ *        Perft depth [fen] [-divide] [-threads n]
+ *
+ * @author David Martinez
+ */
+public class Perft {
+
+    /** Standard perft positions */
+    private static final String[] SUITE_FENS = {
+        BitBoard.START_FEN,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+
+    /** Names of the standard perft positions */
+    private static final String[] SUITE_NAMES = {
+        "Start Position", "Kiwipete", "Position 3", "Position 4", "Position 5", "Position 6"
+    };
+
+    /** Published node counts for the standard positions, starting at depth 1 */
+    private static final long[][] SUITE_NODES = {
+        {20L, 400L, 8902L, 197281L, 4865609L, 119060324L},
+        {48L, 2039L, 97862L, 4085603L, 193690690L},
+        {14L, 191L, 2812L, 43238L, 674624L, 11030083L},
+        {6L, 264L, 9467L, 422333L, 15833292L},
+        {44L, 1486L, 62379L, 2103487L, 89941194L},
+        {46L, 2079L, 89890L, 3894594L, 164075551L}
+    };
+
+    /** Depth each standard position is tested to by default */
+    private static final int[] SUITE_DEPTHS = {5, 4, 5, 4, 4, 4};
+
+    /**
+     * Counts the leaf nodes to a depth
+     * @param position position to count from, it is unchanged when the method returns
+     * @param depth depth to count to
+     * @return number of leaf nodes
+     */
+    public static long perft(BitBoard position, int depth){
+        return perft(position, depth, new int[Math.max(1, depth) * BitBoard.MAX_MOVES], 0);
+    }
+
+    /**
+     * Counts the leaf nodes to a depth, each depth writing its moves to its own part of the move stack
+     * @param position position to count from
+     * @param depth depth to count to
+     * @param moveStack packed moves for every depth
+     * @param start index in the move stack for this depth's moves
+     * @return number of leaf nodes
+     */
+    private static long perft(BitBoard position, int depth, int[] moveStack, int start){
+
+        if(depth == 0){
+            return 1;
+        }
+
+        int end = position.generateMoves(moveStack, start);
+
+        //the moves at the last depth are the leaf nodes
+        if(depth == 1){
+            return end - start;
+        }
+
+        long nodes = 0;
+
+        for(int i = start; i < end; i++){
+            int move = moveStack[i];
+            long undo = position.makeMove(move);
+            nodes += perft(position, depth - 1, moveStack, end);
+            position.unmakeMove(move, undo);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes below each root move, splitting the root moves across threads
+     * @param position position to count from, it is unchanged when the method returns
+     * @param depth depth to count to, at least 1
+     * @param threads number of threads to use
+     * @return leaf node count for each root move, in move generation order
+     */
+    public static long[] divide(BitBoard position, int depth, int threads){
+
+        if(depth < 1){
+            throw new IllegalArgumentException("Depth must be at least 1");
+        }
+
+        ArrayList<Move> moves = position.generateMoves();
+        long[] nodes = new long[moves.size()];
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+
+        try {
+            ArrayList<Future<Long>> results = new ArrayList<>();
+
+            for(Move m : moves){
+                //each root move gets its own copy so the threads do not share a position
+                BitBoard child = new BitBoard(position);
+                child.makeMove(m.getEncoded());
+
+                results.add(pool.submit(() -> perft(child, depth - 1)));
+            }
+
+            for(int i = 0; i < nodes.length; i++){
+                nodes[i] = results.get(i).get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Perft thread failed", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Convert a move to coordinate notation (e2e4, e7e8q)
+     * @param move move
+     * @return move in coordinate notation
+     */
+    public static String toCoordinate(Move move){
+        String rtn = "" + (char) ('a' + move.getStartCol()) + (ChessBoard.ARRAY_SIZE - move.getStartRow()) +
+            (char) ('a' + move.getEndCol()) + (ChessBoard.ARRAY_SIZE - move.getEndRow());
+
+        if(move.getPromotion() != null){
+            rtn += move.getPromotion().toLowerCase();
+        }
+
+        return rtn;
+    }
+
+    /**
+     * Runs each standard position to its default depth and prints the results
+     * @param maxDepth highest depth to test, lower depths are used when the default is higher
+     * @param threads number of threads to use
+     * @return true if every position matched the published count
+     */
+    public static boolean runSuite(int maxDepth, int threads){
+
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+
+        for(int i = 0; i < SUITE_FENS.length; i++){
+            int depth = Math.min(Math.min(maxDepth, SUITE_DEPTHS[i]), SUITE_NODES[i].length);
+
+            long start = System.nanoTime();
+            long nodes = sum(divide(BitBoard.fromFen(SUITE_FENS[i]), depth, threads));
+            long nanos = System.nanoTime() - start;
+
+            boolean matches = nodes == SUITE_NODES[i][depth - 1];
+            passed &= matches;
+            totalNodes += nodes;
+            totalNanos += nanos;
+
+            System.out.printf("%-15s depth %d: %,d nodes (expected %,d) %s %,d nps%n", SUITE_NAMES[i], depth,
+                nodes, SUITE_NODES[i][depth - 1], matches ? "PASS" : "FAIL", nodesPerSecond(nodes, nanos));
+        }
+
+        System.out.printf("Total: %,d nodes %,d nps with %d thread(s)%n", totalNodes,
+            nodesPerSecond(totalNodes, totalNanos), threads);
+
+        return passed;
+    }
+
+    /**
+     * Add the node counts
+     * @param nodes node counts
+     * @return total nodes
+     */
+    private static long sum(long[] nodes){
+        long total = 0;
+        for(long n : nodes){
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Find nodes per second
+     * @param nodes nodes counted
+     * @param nanos time taken in nanoseconds
+     * @return nodes per second
+     */
+    private static long nodesPerSecond(long nodes, long nanos){
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Runs perft from the command line
+     * @param args optional depth, FEN, -divide and -threads n
+     */
+    public static void main(String[] args) {
+
+        int depth = -1;
+        String fen = null;
+        boolean divide = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for(int i = 0; i < args.length; i++){
+            if("-divide".equals(args[i])){
+                divide = true;
+            }
+            else if("-threads".equals(args[i]) && i + 1 < args.length){
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if(depth == -1){
+                depth = Integer.parseInt(args[i]);
+            }
+            else {
+                fen = fen == null ? args[i] : fen + " " + args[i];
+            }
+        }
+
+        if(fen == null && !divide){
+            boolean passed = runSuite(depth == -1 ? Integer.MAX_VALUE : depth, threads);
+            System.exit(passed ? 0 : 1);
+        }
+
+        BitBoard position = BitBoard.fromFen(fen == null ? BitBoard.START_FEN : fen);
+        ArrayList<Move> moves = position.generateMoves();
+
+        long start = System.nanoTime();
+        long[] nodes = divide(position, Math.max(1, depth), threads);
+        long nanos = System.nanoTime() - start;
+
+        if(divide){
+            for(int i = 0; i < nodes.length; i++){
+                System.out.println(toCoordinate(moves.get(i)) + ": " + nodes[i]);
+            }
+        }
+
+        System.out.printf("Nodes: %,d%nTime: %d ms%nNPS: %,d%n", sum(nodes), nanos / 1_000_000,
+            nodesPerSecond(sum(nodes), nanos));
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parallel PGN Importer
+ * Imports every game of a .pgn file for a game database. The file is mapped with
+ * PgnMappedReader and scanned once for the offsets where games end, which split it into
+ * batches, and the batches are replayed on a fork-join pool. Each batch reads its own
+ * slice of the file and decodes the moves straight from the mapped bytes with its own
+ * BitBoard and SanDecoder, so workers share nothing and nothing touches the ChessBoard instance.
+ * Games are handed back in file order, and a game with a bad move reports its error
+ * without stopping the rest of the import
+ *
+ * Usage: PgnImporter file [-threads count]
+ *
+ * @author David Martinez
+ */
+public class PgnImporter implements AutoCloseable {
+
+    /** Number of games replayed by one task */
+    public static final int BATCH_SIZE = 64;
+
+    /** Moves a game has room for before its array grows */
+    private static final int MOVES_CAPACITY = 128;
+
+    /** Batches read ahead of the oldest unfinished batch, for each thread */
+    private static final int BATCHES_PER_THREAD = 4;
+
+    /** Threads replaying games */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an importer with a thread for each processor
+     */
+    public PgnImporter(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an importer
+     * @param threads number of threads replaying games
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public PgnImporter(int threads){
+        if(threads < 1){
+            throw new IllegalArgumentException("Importer needs at least one thread");
+        }
+
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Getter for threads
+     * @return number of threads replaying games
+     */
+    public int getThreads(){
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stop the threads
+     */
+    @Override
+    public void close(){
+        pool.shutdown();
+    }
+
+    /**
+     * Import every game of a file in order. Only a few batches per thread are read
+     * ahead of the games handed back, so files with any number of games can be imported
+     * @param filename file to import
+     * @param action called with each game in file order, on the calling thread
+     * @return number of games imported
+     * @throws IllegalArgumentException if the file can not be read
+     */
+    public int importGames(String filename, Consumer<ImportedGame> action){
+
+        PgnMappedReader reader = new PgnMappedReader(filename);
+        ArrayDeque<ForkJoinTask<ImportedGame[]>> running = new ArrayDeque<>();
+        int maxRunning = getThreads() * BATCHES_PER_THREAD;
+        int games = 0;
+        int count = 0;
+        long start = 0;
+
+        for(int type = reader.nextToken(); type != PgnMappedReader.END; type = reader.nextToken()){
+            if(type != PgnMappedReader.RESULT) { continue; }
+
+            count++;
+            if(count < BATCH_SIZE) { continue; }
+
+            //a batch ends right after the result of its last game
+            running.add(submit(reader, start, games, count));
+            start = reader.getPosition();
+            games += count;
+            count = 0;
+
+            if(running.size() >= maxRunning){
+                deliver(running.poll(), action);
+            }
+        }
+
+        if(count > 0){
+            running.add(submit(reader, start, games, count));
+            games += count;
+        }
+
+        while(!running.isEmpty()){
+            deliver(running.poll(), action);
+        }
+
+        return games;
+    }
+
+    /**
+     * Import every game of a file
+     * @param filename file to import
+     * @return games in file order
+     * @throws IllegalArgumentException if the file can not be read
+     */
+    public ArrayList<ImportedGame> importGames(String filename){
+        ArrayList<ImportedGame> games = new ArrayList<>();
+        importGames(filename, games::add);
+        return games;
+    }
+
+    /**
+     * Start replaying a batch of games
+     * @param reader reader of the file, after the result of the batch's last game
+     * @param start offset where the batch's first game starts
+     * @param first index of the batch's first game in the file
+     * @param count number of games in the batch
+     * @return batch being replayed
+     */
+    private ForkJoinTask<ImportedGame[]> submit(PgnMappedReader reader, long start, int first, int count){
+        PgnMappedReader batch = reader.slice(start, reader.getPosition());
+        return pool.submit(() -> replayAll(batch, first, count));
+    }
+
+    /**
+     * Wait for a batch and hand back its games
+     * @param task batch being replayed
+     * @param action called with each game
+     */
+    private static void deliver(ForkJoinTask<ImportedGame[]> task, Consumer<ImportedGame> action){
+        for(ImportedGame game : task.join()){
+            action.accept(game);
+        }
+    }
+
+    /**
+     * Replay a batch of games on one decoder
+     * @param reader reader of the batch's slice of the file
+     * @param first index of the first game in the file
+     * @param count number of games in the slice
+     * @return replayed games in file order
+     */
+    private static ImportedGame[] replayAll(PgnMappedReader reader, int first, int count){
+        ImportedGame[] imported = new ImportedGame[count];
+        SanDecoder decoder = new SanDecoder();
+
+        for(int i = 0; i < count; i++){
+            imported[i] = replay(reader, first + i, decoder);
+        }
+
+        return imported;
+    }
+
+    /**
+     * Replay the next game of a reader from its start position, which is the FEN tag
+     * if it has one. Moves are decoded straight from the reader's slices of the file,
+     * and the moves after a bad move are skipped to the end of the game
+     * @param reader reader before the game's first token
+     * @param index index of the game in the file
+     * @param decoder decoder of the game's moves, used by one thread
+     * @return replayed game, with the error of the first bad move if there is one
+     */
+    private static ImportedGame replay(PgnMappedReader reader, int index, SanDecoder decoder){
+
+        LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+        int[] moves = new int[MOVES_CAPACITY];
+        int ply = 0;
+        int pliesBefore = 0;
+        String error = null;
+        BitBoard board = null;
+
+        int type = reader.nextToken();
+        while(type == PgnMappedReader.TAG){
+            if(reader.getLength() > 0){
+                tags.put(reader.getString(), reader.getValueString());
+            }
+            type = reader.nextToken();
+        }
+
+        String fen = tags.get("FEN");
+        try {
+            board = BitBoard.fromFen(fen == null ? BitBoard.START_FEN : fen);
+            pliesBefore = pliesBefore(fen, board);
+        } catch (RuntimeException e) {
+            error = "Move 1: " + e.getMessage();
+        }
+
+        for(; type == PgnMappedReader.MOVE; type = reader.nextToken()){
+            if(error != null) { continue; }
+
+            try {
+                if(ply == moves.length){
+                    moves = Arrays.copyOf(moves, ply * 2);
+                }
+                moves[ply] = decoder.decode(board, reader);
+                board.makeMove(moves[ply]);
+                ply++;
+            } catch (RuntimeException e) {
+                error = "Move " + ((pliesBefore + ply) / 2 + 1) + ": " + e.getMessage();
+            }
+        }
+
+        String result = reader.getLength() > 0 ? reader.getString() : null;
+
+        return new ImportedGame(index, tags, Arrays.copyOf(moves, ply), result, error);
+    }
+
+    /**
+     * Count the plies played before a game's start position, from the FEN's fullmove number and side to move
+     * @param fen FEN tag of the game, or null for the standard start
+     * @param board start position of the game
+     * @return number of plies before the first move
+     */
+    private static int pliesBefore(String fen, BitBoard board){
+
+        String[] fields = fen == null ? new String[0] : fen.trim().split("\\s+");
+        int fullmove = 1;
+
+        if(fields.length > 5 && fields[5].matches("[0-9]{1,9}")){
+            fullmove = Math.max(1, Integer.parseInt(fields[5]));
+        }
+
+        return (fullmove - 1) * 2 + (board.isWhiteToMove() ? 0 : 1);
+    }
+
+    /**
+     * Imports a file from the command line and reports the games that failed
+     * @param args file and optional -threads count
+     */
+    public static void main(String[] args){
+
+        String filename = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for(int i = 0; i < args.length; i++){
+            if("-threads".equals(args[i]) && i + 1 < args.length){
+                threads = Integer.parseInt(args[++i]);
+            }
+            else {
+                filename = args[i];
+            }
+        }
+
+        if(filename == null){
+            System.out.println("Usage: PgnImporter file [-threads count]");
+            return;
+        }
+
+        long start = System.nanoTime();
+        long[] counts = new long[2];
+        int games;
+
+        try (PgnImporter importer = new PgnImporter(threads)) {
+            games = importer.importGames(filename, game -> {
+                counts[0] += game.getMoves().length;
+
+                if(!game.isValid()){
+                    counts[1]++;
+                    System.out.printf("Game %d: %s%n", game.getIndex() + 1, game.getError());
+                }
+            });
+        }
+
+        System.out.printf("%,d games, %,d moves, %,d games with errors, %d threads, %d ms%n", games, counts[0], counts[1], threads,
+            (System.nanoTime() - start) / 1_000_000);
+    }
+}
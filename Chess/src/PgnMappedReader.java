@@ -0,0 +1,497 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Memory Mapped PGN Reader
+ * Maps a .pgn file into memory and scans its bytes directly, without decoding them
+ * into characters. Each call to nextToken finds the next tag pair, main line move or
+ * game result and only records where it is in the file as an offset and length; a
+ * String is made only when getString or getValueString is called. Move numbers,
+ * comments, NAGs, move annotations, escaped lines and nested variations are skipped.
+ * Files larger than 2GB are mapped in segments, and slice makes readers of parts of
+ * the file that share the mapping
+ *
+ * @author David Martinez
+ */
+public class PgnMappedReader {
+
+    /** Token type at the end of the file */
+    public static final int END = 0;
+
+    /** Token type of a tag pair, the token is the name and the value has its own slice */
+    public static final int TAG = 1;
+
+    /** Token type of a main line move in SAN */
+    public static final int MOVE = 2;
+
+    /** Token type at the end of every game, the token is the result or empty if the game had none */
+    public static final int RESULT = 3;
+
+    /** Returned by read at the end of the file */
+    private static final int EOF = -1;
+
+    /** Log base 2 of the bytes in each mapped segment */
+    private static final int SEGMENT_SHIFT = 30;
+
+    /** Mask of the offset of a byte in its segment */
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    /** Results that end a game */
+    private static final byte[][] RESULTS = {
+        "1-0".getBytes(StandardCharsets.US_ASCII),
+        "0-1".getBytes(StandardCharsets.US_ASCII),
+        "1/2-1/2".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    /** Mapped segments of the file in order */
+    private final MappedByteBuffer[] segments;
+
+    /** Size of the file in bytes */
+    private final long size;
+
+    /** Offset where reading stops, the end of the file or of the reader's slice */
+    private final long end;
+
+    /** Offset of the next byte to read */
+    private long position;
+
+    /** Offset of the current token */
+    private long offset;
+
+    /** Length of the current token */
+    private int length;
+
+    /** Offset of the current tag value, without its quotes */
+    private long valueOffset;
+
+    /** Length of the current tag value, without its quotes */
+    private int valueLength;
+
+    /** True if a tag, move or result of the current game was read */
+    private boolean isInGame;
+
+    /** True if a move of the current game was read */
+    private boolean hasMoves;
+
+    /**
+     * Creates a reader by mapping a file into memory
+     * @param filename file to read
+     * @throws IllegalArgumentException if the file can not be read
+     */
+    public PgnMappedReader(String filename){
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+            FileChannel channel = file.getChannel()) {
+
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+
+            for(int i = 0; i < segments.length; i++){
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1, size - start));
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file: " + filename);
+        }
+
+        end = size;
+    }
+
+    /**
+     * Creates a reader of a slice of another reader's file, sharing its mapped segments
+     * @param reader reader of the file
+     * @param start offset where the slice starts
+     * @param end offset where the slice ends
+     */
+    private PgnMappedReader(PgnMappedReader reader, long start, long end){
+        segments = reader.segments;
+        size = reader.size;
+        this.end = end;
+        position = start;
+    }
+
+    /**
+     * Make a reader of the games between two offsets, such as the offsets of getPosition
+     * after two results. It has its own position, so it can be read on another thread
+     * @param start offset where the games start
+     * @param end offset where the games end
+     * @return reader of the slice
+     * @throws IndexOutOfBoundsException if the slice is outside this reader's slice
+     */
+    public PgnMappedReader slice(long start, long end){
+        if(start < 0 || start > end || end > this.end){
+            throw new IndexOutOfBoundsException("Slice outside the file");
+        }
+        return new PgnMappedReader(this, start, end);
+    }
+
+    /**
+     * Getter for size
+     * @return size of the file in bytes
+     */
+    public long size(){
+        return size;
+    }
+
+    /**
+     * Get a byte of the file
+     * @param at offset of the byte
+     * @return byte from 0 to 255
+     * @throws IndexOutOfBoundsException if at is outside the file
+     */
+    public int byteAt(long at){
+        if(at < 0 || at >= size){
+            throw new IndexOutOfBoundsException("Offset outside the file");
+        }
+        return segments[(int) (at >>> SEGMENT_SHIFT)].get((int) (at & SEGMENT_MASK)) & 0xFF;
+    }
+
+    /**
+     * Getter for position
+     * @return offset of the next byte to read, right after the game after a result
+     */
+    public long getPosition(){
+        return Math.min(position, end);
+    }
+
+    /**
+     * Getter for offset
+     * @return offset of the current token
+     */
+    public long getOffset(){
+        return offset;
+    }
+
+    /**
+     * Getter for length
+     * @return length of the current token in bytes
+     */
+    public int getLength(){
+        return length;
+    }
+
+    /**
+     * Getter for valueOffset
+     * @return offset of the current tag value, without its quotes
+     */
+    public long getValueOffset(){
+        return valueOffset;
+    }
+
+    /**
+     * Getter for valueLength
+     * @return length of the current tag value in bytes, without its quotes
+     */
+    public int getValueLength(){
+        return valueLength;
+    }
+
+    /**
+     * Make a String of the current token
+     * @return token
+     */
+    public String getString(){
+        return slice(offset, length, false);
+    }
+
+    /**
+     * Make a String of the current tag value, with its escapes removed
+     * @return tag value
+     */
+    public String getValueString(){
+        return slice(valueOffset, valueLength, true);
+    }
+
+    /**
+     * Make a String of a slice of the file
+     * @param start offset of the slice
+     * @param count length of the slice
+     * @param isEscaped true to remove backslashes before quotes and backslashes
+     * @return slice decoded as UTF-8
+     */
+    private String slice(long start, int count, boolean isEscaped){
+        byte[] bytes = new byte[count];
+        int used = 0;
+
+        for(int i = 0; i < count; i++){
+            int b = byteAt(start + i);
+
+            if(isEscaped && b == '\\' && i + 1 < count){
+                b = byteAt(start + ++i);
+            }
+            bytes[used++] = (byte) b;
+        }
+
+        return new String(bytes, 0, used, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the next byte
+     * @return byte from 0 to 255, EOF at the end of the file
+     */
+    private int read(){
+        if(position >= end){
+            position = end + 1;
+            return EOF;
+        }
+        return byteAt(position++);
+    }
+
+    /**
+     * Put back the last byte read
+     */
+    private void unread(){
+        position--;
+    }
+
+    /**
+     * Check if a byte is whitespace
+     * @param c byte
+     * @return true if c is a space or control character
+     */
+    private static boolean isWhitespace(int c){
+        return c >= 0 && c <= ' ';
+    }
+
+    /**
+     * Check if a byte ends a move or result token
+     * @param c byte
+     * @return true if c is whitespace, the end of the file or starts another token
+     */
+    private static boolean isTokenEnd(int c){
+        return c == EOF || isWhitespace(c) || c == '{' || c == '}' || c == '(' || c == ')'
+            || c == '[' || c == ']' || c == ';' || c == '$';
+    }
+
+    /**
+     * Find the next token. The previous token's offsets are no longer valid after this
+     * @return token type: TAG, MOVE, RESULT or END
+     */
+    public int nextToken(){
+
+        //how many variations the reader is inside
+        int depth = 0;
+
+        while(true){
+            int c = read();
+            long start = position - 1;
+
+            if(c == EOF){
+                if(isInGame){
+                    return endGame(end, 0);
+                }
+                return END;
+            }
+
+            if(isWhitespace(c)) { continue; }
+
+            if(c == '%' && (start == 0 || byteAt(start - 1) == '\n')){
+                skipLine();
+                continue;
+            }
+
+            switch(c){
+                case '{':
+                    skipComment();
+                    continue;
+                case ';':
+                    skipLine();
+                    continue;
+                case '$':
+                    skipNag();
+                    continue;
+                case '(':
+                    depth++;
+                    continue;
+                case ')':
+                    depth = Math.max(0, depth - 1);
+                    continue;
+                case '[':
+                    //tags after moves belong to the next game, this one had no result
+                    if(hasMoves){
+                        unread();
+                        return endGame(start, 0);
+                    }
+                    readTag();
+                    isInGame = true;
+                    return TAG;
+                case '*':
+                    if(depth == 0){
+                        return endGame(start, 1);
+                    }
+                    continue;
+                default:
+                    break;
+            }
+
+            c = read();
+            while(!isTokenEnd(c)){
+                c = read();
+            }
+            unread();
+
+            //moves in variations are skipped
+            if(depth > 0) { continue; }
+
+            offset = start;
+            length = (int) (position - start);
+
+            if(isResult()){
+                return endGame(offset, length);
+            }
+
+            if(trimMove()){
+                isInGame = true;
+                hasMoves = true;
+                return MOVE;
+            }
+        }
+    }
+
+    /**
+     * End the current game with a result token
+     * @param resultOffset offset of the result
+     * @param resultLength length of the result, 0 if the game had none
+     * @return RESULT
+     */
+    private int endGame(long resultOffset, int resultLength){
+        offset = resultOffset;
+        length = resultLength;
+        isInGame = false;
+        hasMoves = false;
+        return RESULT;
+    }
+
+    /**
+     * Check if the current token is a result
+     * @return true if the token is a result
+     */
+    private boolean isResult(){
+        for(byte[] result : RESULTS){
+            if(result.length != length) { continue; }
+
+            int i = 0;
+            while(i < length && byteAt(offset + i) == result[i]){
+                i++;
+            }
+            if(i == length){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the move number and annotations from the current token
+     * @return true if a move is left, false if the token was only a move number
+     */
+    private boolean trimMove(){
+        long start = offset;
+        long end = offset + length;
+
+        while(start < end && isDigit(byteAt(start))){
+            start++;
+        }
+
+        if(start == end) { return false; }
+
+        //"12." and "12..." are move numbers, a move starting with a digit is castling with zeros
+        if(byteAt(start) == '.'){
+            while(start < end && byteAt(start) == '.'){
+                start++;
+            }
+        }
+        else {
+            start = offset;
+        }
+
+        while(end > start && (byteAt(end - 1) == '!' || byteAt(end - 1) == '?')){
+            end--;
+        }
+
+        offset = start;
+        length = (int) (end - start);
+        return length > 0;
+    }
+
+    /**
+     * Check if a byte is a digit
+     * @param c byte
+     * @return true if c is 0 to 9
+     */
+    private static boolean isDigit(int c){
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Read the slices of a tag pair, after its opening bracket
+     */
+    private void readTag(){
+        int c = read();
+        while(c != EOF && isWhitespace(c)){
+            c = read();
+        }
+
+        offset = position - 1;
+        while(c != EOF && c != '"' && c != ']' && !isWhitespace(c)){
+            c = read();
+        }
+        length = (int) (Math.min(position, end + 1) - 1 - offset);
+
+        while(c != EOF && c != '"' && c != ']'){
+            c = read();
+        }
+
+        valueOffset = position;
+        valueLength = 0;
+        if(c == '"'){
+            c = read();
+            while(c != EOF && c != '"'){
+                //a backslash escapes a quote or backslash in the value
+                if(c == '\\'){
+                    c = read();
+                    if(c == EOF) { break; }
+                }
+                c = read();
+            }
+            valueLength = (int) (Math.min(position, end + 1) - 1 - valueOffset);
+        }
+
+        while(c != EOF && c != ']'){
+            c = read();
+        }
+    }
+
+    /**
+     * Skip a brace comment, after its opening brace
+     */
+    private void skipComment(){
+        int c = read();
+        while(c != EOF && c != '}'){
+            c = read();
+        }
+    }
+
+    /**
+     * Skip the rest of the line
+     */
+    private void skipLine(){
+        int c = read();
+        while(c != EOF && c != '\n'){
+            c = read();
+        }
+    }
+
+    /**
+     * Skip the digits of a NAG, after its dollar sign
+     */
+    private void skipNag(){
+        int c = read();
+        while(isDigit(c)){
+            c = read();
+        }
+        unread();
+    }
+}
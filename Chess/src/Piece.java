@@ -1,7 +1,6 @@
 import java.awt.Image;
-import java.io.File;
 
-import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
 
 /**
  * Piece Abstract Class
@@ -29,27 +28,18 @@ public abstract class Piece {
     /** Each piece starts off with isFirstMove to true */
     private boolean isFirstMove;
 
-    /** White Piece File Path */
-    protected File whiteImgFile;
-
-    /** Black Piece File Path */
-    protected File blackImgFile;
-
     /**
      * Constructor For Piece Type
      * @param row piece row
      * @param col piece column
      * @param isWhitePiece piece side
      * @param name piece name
-     * @param whiteImgFileName piece white img path
-     * @param blackImgFileName piece black img path
      */
-    public Piece(int row, int col, boolean isWhitePiece, String name, String whiteImgFileName, String blackImgFileName){
+    public Piece(int row, int col, boolean isWhitePiece, String name){
         setRow(row);
         setCol(col);
         setIsWhitePiece(isWhitePiece);
         setName(name);
-        setImgFiles(whiteImgFileName, blackImgFileName);
         this.isFirstMove = true;
     }
 
@@ -59,8 +49,6 @@ public abstract class Piece {
         this.isWhitePiece = other.isWhitePiece;
         this.isFirstMove = other.isFirstMove;
         this.name = other.name;
-        this.whiteImgFile = other.whiteImgFile;
-        this.blackImgFile = other.blackImgFile;
     }
 
     /** 
@@ -178,35 +166,20 @@ public abstract class Piece {
         return this.col;
     }
 
-    /**
-     * Set Image Files for white and black side
-     * @param whiteImgFileName file path for white image
-     * @param blackImgFileName file path for black image
+    /** 
+     * Get the image of the piece, decoded once and shared by every piece of its kind
+     * @return Image, null if it could not be read
      */
-    public void setImgFiles(String whiteImgFileName, String blackImgFileName){
-
-        if(whiteImgFileName == null || "".equals(whiteImgFileName)){
-            throw new IllegalArgumentException("File name is null or empty");
-        }
-
-        if(blackImgFileName == null || "".equals(blackImgFileName)){
-            throw new IllegalArgumentException("File name is null or empty");
-        }
-
-        whiteImgFile = new File(whiteImgFileName);
-        blackImgFile = new File(blackImgFileName);
+    public Image getImage(){
+        ImageIcon icon = getIcon();
+        return icon == null ? null : icon.getImage();
     }
 
-    /** 
-     * Find image from file and return it
-     * @return Image
+    /**
+     * Get the cached icon of the piece
+     * @return icon, null if its image could not be read
      */
-    public Image getImage(){
-        try {
-            Image img = ImageIO.read(isWhitePiece ? whiteImgFile : blackImgFile);
-            return img;
-        } catch (Exception e) {
-            return null;
-        }
+    public ImageIcon getIcon(){
+        return PieceIcons.getIcon(name, isWhitePiece);
     }
 }
\ No newline at end of file
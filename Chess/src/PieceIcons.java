@@ -0,0 +1,88 @@
+import java.awt.Image;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Piece Icon Cache
+ * Every piece image is read and decoded once when the class loads, from the image
+ * paths of the piece classes, and shared by the whole program, so drawing the board
+ * does no file reading or image decoding. Icons are indexed by BitBoard piece code
+ *
+ * @author David Martinez
+ */
+public class PieceIcons {
+
+    /** Image path of each white piece, in piece type order */
+    private static final String[] WHITE_IMG_PATHS = {Pawn.WHITE_IMG_PATH, Knight.WHITE_IMG_PATH,
+        Bishop.WHITE_IMG_PATH, Rook.WHITE_IMG_PATH, Queen.WHITE_IMG_PATH, King.WHITE_IMG_PATH};
+
+    /** Image path of each black piece, in piece type order */
+    private static final String[] BLACK_IMG_PATHS = {Pawn.BLACK_IMG_PATH, Knight.BLACK_IMG_PATH,
+        Bishop.BLACK_IMG_PATH, Rook.BLACK_IMG_PATH, Queen.BLACK_IMG_PATH, King.BLACK_IMG_PATH};
+
+    /** Piece names in piece type order */
+    private static final String TYPE_NAMES = "PNBRQK";
+
+    /** Icon of each piece code at the image size, null if its image could not be read */
+    private static final ImageIcon[] ICONS = new ImageIcon[BitBoard.PIECE_CODES];
+
+    static {
+        for(int type = BitBoard.PAWN; type <= BitBoard.KING; type++){
+            ICONS[BitBoard.pieceCode(type, true)] = load(WHITE_IMG_PATHS[type]);
+            ICONS[BitBoard.pieceCode(type, false)] = load(BLACK_IMG_PATHS[type]);
+        }
+    }
+
+    /**
+     * Not created, all methods are static
+     */
+    private PieceIcons(){
+    }
+
+    /**
+     * Read and decode one piece image
+     * @param path image file path
+     * @return icon, null if the image could not be read
+     */
+    private static ImageIcon load(String path){
+        try {
+            Image img = ImageIO.read(new File(path));
+            return img == null ? null : new ImageIcon(img);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the icon of a piece
+     * @param code BitBoard piece code
+     * @return icon, null if its image could not be read
+     * @throws IllegalArgumentException if code is not a piece code
+     */
+    public static ImageIcon getIcon(int code){
+        if(code < 0 || code >= BitBoard.PIECE_CODES){
+            throw new IllegalArgumentException("Invalid piece code");
+        }
+
+        return ICONS[code];
+    }
+
+    /**
+     * Get the icon of a piece by name and side
+     * @param name piece name ("P", "N", "B", "R", "Q" or "K")
+     * @param isWhite true for the white piece
+     * @return icon, null if its image could not be read
+     * @throws IllegalArgumentException if name is not a piece name
+     */
+    public static ImageIcon getIcon(String name, boolean isWhite){
+        int type = name == null || name.length() != 1 ? -1 : TYPE_NAMES.indexOf(name);
+
+        if(type < 0){
+            throw new IllegalArgumentException("Invalid piece name");
+        }
+
+        return ICONS[BitBoard.pieceCode(type, isWhite)];
+    }
+}
@@ -9,10 +9,10 @@ public class Queen extends Piece {
     private static final String NAME = "Q";
 
     /** White Piece File Path */
-    private static final String WHITE_IMG_PATH = "src/resources/WhiteQueen.png";
+    static final String WHITE_IMG_PATH = "src/resources/WhiteQueen.png";
 
     /** Black Piece File Path */
-    private static final String BLACK_IMG_PATH = "src/resources/BlackQueen.png";
+    static final String BLACK_IMG_PATH = "src/resources/BlackQueen.png";
 
     /**
      * Bishop Constructor
@@ -23,7 +23,7 @@ public class Queen extends Piece {
      * @throws IllegalArgumentException if row or col is out of bounds
      */
     public Queen(int row, int col, boolean isWhitePiece){
-        super(row, col, isWhitePiece, NAME, WHITE_IMG_PATH, BLACK_IMG_PATH);
+        super(row, col, isWhitePiece, NAME);
     }
 
     public Queen(Queen other){
@@ -9,10 +9,10 @@ public class Rook extends Piece {
     private static final String NAME = "R";
 
     /** White Piece File Path */
-    private static final String WHITE_IMG_PATH = "src/resources/WhiteRook.png";
+    static final String WHITE_IMG_PATH = "src/resources/WhiteRook.png";
 
     /** Black Piece File Path */
-    private static final String BLACK_IMG_PATH = "src/resources/BlackRook.png";
+    static final String BLACK_IMG_PATH = "src/resources/BlackRook.png";
 
     /**
      * Rook Constructor
@@ -24,7 +24,7 @@ public class Rook extends Piece {
      */
     public Rook(int row, int col, boolean isWhitePiece){
 
-        super(row, col, isWhitePiece, NAME, WHITE_IMG_PATH, BLACK_IMG_PATH);
+        super(row, col, isWhitePiece, NAME);
     }
 
     public Rook(Rook other){
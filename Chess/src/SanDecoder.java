@@ -0,0 +1,315 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SAN Decoder
+ * Turns a move in standard algebraic notation into the packed legal move it names.
+ * The move is read in one pass into its piece type, the file and rank it moves from if
+ * given, its ending square and its promotion. The starting square is then found from
+ * the pieces of that type attacking the ending square, or the pawns behind it, keeping
+ * only the one whose move leaves its king safe. No moves are generated and nothing is
+ * allocated unless the move is invalid. A decoder reuses its buffer, so each thread
+ * needs its own
+ *
+ * @author David Martinez
+ */
+public class SanDecoder {
+
+    /** Longest SAN move read, with check marks and annotations */
+    public static final int MAX_LENGTH = 16;
+
+    /** Pieces in SAN by piece type, pawns have no letter */
+    private static final String SAN_PIECES = "PNBRQK";
+
+    /** Squares of the a file */
+    private static final long FILE_A = 0x0101010101010101L;
+
+    /** Squares of the 8th rank */
+    private static final long RANK_8 = 0xFFL;
+
+    /** Characters of the move being decoded */
+    private final byte[] text = new byte[MAX_LENGTH];
+
+    /** Number of characters in text */
+    private int length;
+
+    /**
+     * Decode a SAN move
+     * @param board position the move is played in
+     * @param san move in SAN, with or without check marks and annotations
+     * @return packed move
+     * @throws IllegalArgumentException if the move is not legal or names more than one legal move
+     */
+    public int decode(BitBoard board, String san){
+        if(san.length() > MAX_LENGTH){
+            throw new IllegalArgumentException("The move " + san + " is invalid");
+        }
+
+        length = san.length();
+        for(int i = 0; i < length; i++){
+            text[i] = (byte) san.charAt(i);
+        }
+
+        return decode(board);
+    }
+
+    /**
+     * Decode the move token a reader is on, straight from the file
+     * @param board position the move is played in
+     * @param reader reader whose current token is a move
+     * @return packed move
+     * @throws IllegalArgumentException if the move is not legal or names more than one legal move
+     */
+    public int decode(BitBoard board, PgnMappedReader reader){
+        if(reader.getLength() > MAX_LENGTH){
+            throw new IllegalArgumentException("The move " + reader.getString() + " is invalid");
+        }
+
+        length = reader.getLength();
+        for(int i = 0; i < length; i++){
+            text[i] = (byte) reader.byteAt(reader.getOffset() + i);
+        }
+
+        return decode(board);
+    }
+
+    /**
+     * Decode the move in text
+     * @param board position the move is played in
+     * @return packed move
+     * @throws IllegalArgumentException if the move is not legal or names more than one legal move
+     */
+    private int decode(BitBoard board){
+
+        int end = length;
+        while(end > 0 && (text[end - 1] == '+' || text[end - 1] == '#' || text[end - 1] == '!' || text[end - 1] == '?')){
+            end--;
+        }
+
+        boolean isWhite = board.isWhiteToMove();
+
+        if(isCastle(end)){
+            return castle(board, isWhite, end == 3);
+        }
+
+        int start = 0;
+        int type = BitBoard.PAWN;
+        if(end > 0 && pieceType(text[0]) > BitBoard.PAWN){
+            type = pieceType(text[0]);
+            start = 1;
+        }
+
+        //promotion, with or without the equals sign, to a knight, bishop, rook or queen
+        int promotion = BitBoard.EMPTY;
+        if(type == BitBoard.PAWN && end > 0 && pieceType(text[end - 1]) > BitBoard.PAWN && pieceType(text[end - 1]) < BitBoard.KING){
+            promotion = pieceType(text[end - 1]);
+            end--;
+
+            if(end > 0 && text[end - 1] == '='){
+                end--;
+            }
+
+            //files saved by earlier versions put the check mark before the promotion
+            if(end > 0 && (text[end - 1] == '+' || text[end - 1] == '#')){
+                end--;
+            }
+        }
+
+        if(end - start < 2){
+            throw invalid();
+        }
+
+        int toCol = text[end - 2] - 'a';
+        int toRow = '8' - text[end - 1];
+        if(toCol < 0 || toCol > 7 || toRow < 0 || toRow > 7){
+            throw invalid();
+        }
+        int to = BitBoard.square(toRow, toCol);
+
+        //the file and rank the piece moves from, if given
+        int fromCol = -1;
+        int fromRow = -1;
+        boolean isCapture = false;
+        for(int i = start; i < end - 2; i++){
+            int c = text[i];
+
+            if(c >= 'a' && c <= 'h'){
+                fromCol = c - 'a';
+            }
+            else if(c >= '1' && c <= '8'){
+                fromRow = '8' - c;
+            }
+            else if(c == 'x' || c == ':'){
+                isCapture = true;
+            }
+            else if(c != '-'){
+                throw invalid();
+            }
+        }
+
+        int target = board.getPiece(to);
+        if(target != BitBoard.EMPTY && BitBoard.isWhite(target) == isWhite){
+            throw invalid();
+        }
+
+        boolean isEnPassant = type == BitBoard.PAWN && target == BitBoard.EMPTY && to == board.getEnPassantSquare();
+        boolean takes = target != BitBoard.EMPTY || isEnPassant;
+        if(isCapture && !takes){
+            throw invalid();
+        }
+
+        //a pawn capture names the file it takes from, so a push onto a piece is not read as a capture
+        if(type == BitBoard.PAWN && takes && fromCol == -1){
+            throw invalid();
+        }
+
+        long candidates;
+        if(type == BitBoard.PAWN){
+            //a pawn on the last row must promote, and only there
+            if((promotion != BitBoard.EMPTY) != (toRow == (isWhite ? 0 : 7))){
+                throw invalid();
+            }
+            candidates = pawnsMovingTo(board, to, isWhite, takes, fromCol);
+        }
+        else {
+            candidates = BitBoard.attacks(type, to, board.getOccupied()) & board.getPieces(BitBoard.pieceCode(type, isWhite));
+        }
+
+        if(fromCol != -1){
+            candidates &= FILE_A << fromCol;
+        }
+        if(fromRow != -1){
+            candidates &= RANK_8 << (fromRow * 8);
+        }
+
+        int from = BitBoard.NO_SQUARE;
+        while(candidates != 0){
+            int square = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+
+            if(!board.leavesKingSafe(square, to)) { continue; }
+
+            if(from != BitBoard.NO_SQUARE){
+                throw new IllegalArgumentException("The move " + textString() + " is ambiguous");
+            }
+            from = square;
+        }
+
+        if(from == BitBoard.NO_SQUARE){
+            throw invalid();
+        }
+
+        int flags = (takes ? Move.CAPTURE : 0) | (isEnPassant ? Move.EN_PASSANT : 0);
+        return Move.encode(from, to, promotion, flags);
+    }
+
+    /**
+     * Find the pawns that can move to a square
+     * @param board position the move is played in
+     * @param to ending square
+     * @param isWhite side to move
+     * @param takes true if the move captures
+     * @param fromCol file the pawn moves from, -1 if not given
+     * @return bitboard of pawns
+     */
+    private static long pawnsMovingTo(BitBoard board, int to, boolean isWhite, boolean takes, int fromCol){
+        long pawns = board.getPieces(BitBoard.pieceCode(BitBoard.PAWN, isWhite));
+
+        if(takes){
+            //a pawn of the other side on the square would attack the capturing pawns
+            return fromCol == to % 8 ? 0 : BitBoard.PAWN_ATTACKS[isWhite ? BitBoard.BLACK : BitBoard.WHITE][to] & pawns;
+        }
+
+        int behind = isWhite ? to + 8 : to - 8;
+        if(behind < 0 || behind >= BitBoard.SQUARES){
+            return 0;
+        }
+        if((pawns & 1L << behind) != 0){
+            return 1L << behind;
+        }
+
+        //two squares from the starting row
+        int twoBehind = isWhite ? to + 16 : to - 16;
+        boolean isDoubleRow = to / 8 == (isWhite ? 4 : 3);
+        if(isDoubleRow && board.isEmpty(behind) && (pawns & 1L << twoBehind) != 0){
+            return 1L << twoBehind;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Find the castling move of the side to move, the king can not castle out of,
+     * through, or into check
+     * @param board position the move is played in
+     * @param isWhite side to move
+     * @param isKingSide true for king side castling
+     * @return packed move
+     * @throws IllegalArgumentException if the side can not castle that way
+     */
+    private int castle(BitBoard board, boolean isWhite, boolean isKingSide){
+        int king = isWhite ? 60 : 4;
+        int right = isKingSide ? (isWhite ? BitBoard.WHITE_KING_SIDE : BitBoard.BLACK_KING_SIDE)
+            : (isWhite ? BitBoard.WHITE_QUEEN_SIDE : BitBoard.BLACK_QUEEN_SIDE);
+        int step = isKingSide ? 1 : -1;
+
+        if((board.getCastlingRights() & right) == 0 || board.getPiece(king) != BitBoard.pieceCode(BitBoard.KING, isWhite)
+            || board.getPiece(isKingSide ? king + 3 : king - 4) != BitBoard.pieceCode(BitBoard.ROOK, isWhite)){
+            throw invalid();
+        }
+
+        if(!board.isEmpty(king + step) || !board.isEmpty(king + 2 * step) || (!isKingSide && !board.isEmpty(king - 3))){
+            throw invalid();
+        }
+
+        if(board.isSquareAttacked(king, !isWhite) || board.isSquareAttacked(king + step, !isWhite)
+            || board.isSquareAttacked(king + 2 * step, !isWhite)){
+            throw invalid();
+        }
+
+        return Move.encode(king, king + 2 * step, BitBoard.EMPTY, Move.CASTLE);
+    }
+
+    /**
+     * Check if text is a castling move, with letter O or zero
+     * @param end length of the move without check marks
+     * @return true if the move is O-O, O-O-O, 0-0 or 0-0-0
+     */
+    private boolean isCastle(int end){
+        if(end != 3 && end != 5) { return false; }
+
+        int o = text[0];
+        if(o != 'O' && o != '0') { return false; }
+
+        for(int i = 0; i < end; i++){
+            if(text[i] != (i % 2 == 0 ? o : '-')){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the piece type of a SAN piece letter
+     * @param c character
+     * @return piece type, EMPTY if c is not a piece letter
+     */
+    private static int pieceType(int c){
+        return SAN_PIECES.indexOf(c);
+    }
+
+    /**
+     * Make an exception for the move in text being invalid
+     * @return exception to throw
+     */
+    private IllegalArgumentException invalid(){
+        return new IllegalArgumentException("The move " + textString() + " is invalid");
+    }
+
+    /**
+     * Make a String of the move in text
+     * @return move
+     */
+    private String textString(){
+        return new String(text, 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * SAN Writer
+ * Writes a move in standard algebraic notation from the position before the move and
+ * its legal moves. The file or rank the piece moves from is only written when another
+ * legal move of the same piece type ends on the same square. Check and mate come from
+ * making the move on the board and asking whether the other king is attacked, and only
+ * a checking move looks for replies. The board is unmade back to how it was
+ *
+ * @author David Martinez
+ */
+public class SanWriter {
+
+    /** King side castling */
+    public static final String KING_SIDE_CASTLE = "O-O";
+
+    /** Queen side castling */
+    public static final String QUEEN_SIDE_CASTLE = "O-O-O";
+
+    /** Pieces in SAN by piece type, pawns have no letter */
+    private static final String SAN_PIECES = "PNBRQK";
+
+    /** Replies looked for after a check, one array for each thread writing moves */
+    private static final ThreadLocal<int[]> REPLIES = ThreadLocal.withInitial(() -> new int[BitBoard.MAX_MOVES]);
+
+    /**
+     * Not created, all methods are static
+     */
+    private SanWriter(){
+    }
+
+    /**
+     * Write a move in SAN from the legal moves already generated for the position
+     * @param board position before the move, left unchanged
+     * @param move packed legal move
+     * @param legal legal moves of the position
+     * @param count number of legal moves
+     * @return move in SAN with its check or mate mark
+     * @throws IllegalArgumentException if there is no piece on the starting square
+     */
+    public static String toSan(BitBoard board, int move, int[] legal, int count){
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = board.getPiece(from);
+
+        if(piece == BitBoard.EMPTY){
+            throw new IllegalArgumentException("No piece to move");
+        }
+
+        int type = BitBoard.typeOf(piece);
+        StringBuilder san = new StringBuilder(8);
+
+        if(type == BitBoard.KING && Math.abs(to - from) == 2){
+            san.append(to > from ? KING_SIDE_CASTLE : QUEEN_SIDE_CASTLE);
+        }
+        else {
+            boolean takes = board.getPiece(to) != BitBoard.EMPTY || (type == BitBoard.PAWN && to == board.getEnPassantSquare());
+
+            if(type == BitBoard.PAWN){
+                if(takes){
+                    san.append(fileName(from)).append('x');
+                }
+            }
+            else {
+                san.append(SAN_PIECES.charAt(type));
+                appendDisambiguation(san, board, from, to, type, legal, count);
+
+                if(takes){
+                    san.append('x');
+                }
+            }
+
+            san.append(fileName(to)).append(rankName(to));
+
+            if(Move.promotion(move) != BitBoard.EMPTY){
+                san.append('=').append(SAN_PIECES.charAt(Move.promotion(move)));
+            }
+        }
+
+        long undo = board.makeMove(move);
+        san.append(checkSuffix(board));
+        board.unmakeMove(move, undo);
+
+        return san.toString();
+    }
+
+    /**
+     * Get the mark for the side to move being in check
+     * @param board position after a move
+     * @return "#" if the side to move is mated, "+" if it is in check, else ""
+     */
+    public static String checkSuffix(BitBoard board){
+        if(!board.isInCheck(board.isWhiteToMove())){
+            return "";
+        }
+
+        return board.generateMoves(REPLIES.get(), 0) == 0 ? "#" : "+";
+    }
+
+    /**
+     * Add the file, rank or square the piece moves from when another piece of the same
+     * type could also move to the ending square
+     * @param san move being written
+     * @param board position before the move
+     * @param from starting square
+     * @param to ending square
+     * @param type piece type
+     * @param legal legal moves of the position
+     * @param count number of legal moves
+     */
+    private static void appendDisambiguation(StringBuilder san, BitBoard board, int from, int to, int type, int[] legal, int count){
+        boolean isAmbiguous = false;
+        boolean isSameFile = false;
+        boolean isSameRank = false;
+
+        for(int i = 0; i < count; i++){
+            int other = Move.from(legal[i]);
+
+            if(other == from || Move.to(legal[i]) != to) { continue; }
+            if(BitBoard.typeOf(board.getPiece(other)) != type) { continue; }
+
+            isAmbiguous = true;
+            isSameFile |= other % 8 == from % 8;
+            isSameRank |= other / 8 == from / 8;
+        }
+
+        if(!isAmbiguous) { return; }
+
+        if(!isSameFile){
+            san.append(fileName(from));
+        }
+        else if(!isSameRank){
+            san.append(rankName(from));
+        }
+        else {
+            san.append(fileName(from)).append(rankName(from));
+        }
+    }
+
+    /**
+     * Get the file letter of a square
+     * @param square square
+     * @return 'a' to 'h'
+     */
+    private static char fileName(int square){
+        return (char) ('a' + square % 8);
+    }
+
+    /**
+     * Get the rank digit of a square
+     * @param square square
+     * @return '1' to '8'
+     */
+    private static char rankName(int square){
+        return (char) ('8' - square / 8);
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+
+/**
+ * Search Speedup Benchmark
+ * Times how long the bot takes to reach a fixed depth with different thread counts
+ * and reports the speedup over one thread. Every run starts with an empty table
+ *
+ * Usage: SearchBenchmark [depth] [-threads max] [-table mb]
+ *
+ * @author David Martinez
+ */
+public class SearchBenchmark {
+
+    /** Positions searched by the benchmark */
+    private static final String[] FENS = {
+        BitBoard.START_FEN,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    };
+
+    /** Depth searched when none is given */
+    private static final int DEFAULT_DEPTH = 7;
+
+    /**
+     * Search every position to a depth with a fresh bot
+     * @param depth depth to search
+     * @param threads number of threads
+     * @param tableMegabytes transposition table size in MB
+     * @return time taken in nanoseconds and moves checked
+     */
+    public static long[] run(int depth, int threads, int tableMegabytes){
+        long nanos = 0;
+        long nodes = 0;
+
+        for(String fen : FENS){
+            BitBoard position = BitBoard.fromFen(fen);
+            ChessBot bot = new ChessBot(tableMegabytes, threads);
+
+            long start = System.nanoTime();
+            bot.findBestMove(position, SearchLimits.depth(depth));
+            nanos += System.nanoTime() - start;
+            nodes += bot.getMovesChecked();
+        }
+
+        return new long[] {nanos, nodes};
+    }
+
+    /**
+     * Thread counts to test: powers of two up to the most, and the most
+     * @param maxThreads most threads
+     * @return thread counts in increasing order
+     */
+    private static ArrayList<Integer> threadCounts(int maxThreads){
+        ArrayList<Integer> counts = new ArrayList<>();
+
+        for(int threads = 1; threads < maxThreads; threads *= 2){
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+
+        return counts;
+    }
+
+    /**
+     * Runs the benchmark from the command line
+     * @param args optional depth, -threads max and -table mb
+     */
+    public static void main(String[] args){
+
+        int depth = DEFAULT_DEPTH;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int tableMegabytes = ChessBot.DEFAULT_TABLE_MB;
+
+        for(int i = 0; i < args.length; i++){
+            if("-threads".equals(args[i]) && i + 1 < args.length){
+                maxThreads = Integer.parseInt(args[++i]);
+            }
+            else if("-table".equals(args[i]) && i + 1 < args.length){
+                tableMegabytes = Integer.parseInt(args[++i]);
+            }
+            else {
+                depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        //warm up the JIT so the one thread time is not inflated
+        run(Math.max(1, depth - 2), 1, tableMegabytes);
+
+        long baseNanos = 0;
+
+        System.out.printf("Depth %d over %d positions%n", depth, FENS.length);
+        System.out.printf("%8s %10s %14s %8s%n", "Threads", "Time (ms)", "Moves", "Speedup");
+
+        for(int threads : threadCounts(maxThreads)){
+            long[] result = run(depth, threads, tableMegabytes);
+
+            if(threads == 1){
+                baseNanos = result[0];
+            }
+
+            System.out.printf("%8d %10d %,14d %7.2fx%n", threads, result[0] / 1_000_000, result[1],
+                (double) baseNanos / result[0]);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Search Limits
+ * When the bot has to stop searching: at a depth, after a number of moves or after
+ * an amount of time, whichever comes first. A limit of 0 means no limit
+ *
+ * @author David Martinez
+ */
+public class SearchLimits {
+
+    /** Value of a limit that is not set */
+    public static final int NO_LIMIT = 0;
+
+    /** Deepest depth to search, 0 for no limit */
+    private final int depth;
+
+    /** Number of moves the calling thread can check, 0 for no limit */
+    private final long nodes;
+
+    /** Time the search can take in milliseconds, 0 for no limit */
+    private final long millis;
+
+    /**
+     * Creates limits
+     * @param depth deepest depth to search, 0 for no limit
+     * @param nodes number of moves the calling thread can check, 0 for no limit
+     * @param millis time the search can take in milliseconds, 0 for no limit
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public SearchLimits(int depth, long nodes, long millis){
+        if(depth < 0 || nodes < 0 || millis < 0){
+            throw new IllegalArgumentException("Search limits can not be negative");
+        }
+
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+    }
+
+    /**
+     * Limits that search to a fixed depth
+     * @param depth depth to search
+     * @return limits
+     */
+    public static SearchLimits depth(int depth){
+        return new SearchLimits(depth, NO_LIMIT, NO_LIMIT);
+    }
+
+    /**
+     * Getter for depth
+     * @return deepest depth to search, 0 for no limit
+     */
+    public int getDepth(){
+        return depth;
+    }
+
+    /**
+     * Getter for nodes
+     * @return number of moves the calling thread can check, 0 for no limit
+     */
+    public long getNodes(){
+        return nodes;
+    }
+
+    /**
+     * Getter for millis
+     * @return time the search can take in milliseconds, 0 for no limit
+     */
+    public long getMillis(){
+        return millis;
+    }
+}
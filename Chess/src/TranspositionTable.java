@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transposition Table
+ * Fixed size table of search results keyed by Zobrist key. Each entry is two longs,
+ * the key XOR the data and the data, so a write torn by another thread fails the
+ * key check and reads as a miss instead of needing a lock
+ *
+ * Data layout: bits 0-15 move, 16-31 score, 32-39 depth, 40-41 bound
+ *
+ * @author David Martinez
+ */
+public class TranspositionTable {
+
+    /** Score is exact */
+    public static final int EXACT = 1;
+
+    /** Score is a lower bound, the search failed high */
+    public static final int LOWER_BOUND = 2;
+
+    /** Score is an upper bound, the search failed low */
+    public static final int UPPER_BOUND = 3;
+
+    /** Returned by probe when the position is not in the table */
+    public static final long NO_ENTRY = 0;
+
+    /** Move value stored when there is no best move */
+    public static final int NO_MOVE = 0;
+
+    /** Bytes used by one entry */
+    private static final int ENTRY_BYTES = 16;
+
+    /** Offset added to scores so they are stored as unsigned 16 bits */
+    private static final int SCORE_OFFSET = 1 << 15;
+
+    /** Key of each entry XOR its data */
+    private final long[] keys;
+
+    /** Data of each entry */
+    private final long[] data;
+
+    /** Mask from a key to an entry index */
+    private final int indexMask;
+
+    /** Probes that found the position */
+    private final LongAdder hits = new LongAdder();
+
+    /** Probes that did not find the position */
+    private final LongAdder misses = new LongAdder();
+
+    /** Probes that found a different position in the entry */
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Creates a table using at most the given memory
+     * @param megabytes memory budget in MB
+     * @throws IllegalArgumentException if megabytes is less than 1
+     */
+    public TranspositionTable(int megabytes){
+        if(megabytes < 1){
+            throw new IllegalArgumentException("Table size must be at least 1 MB");
+        }
+
+        //largest power of two number of entries that fits in the budget
+        long entries = Long.highestOneBit((long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        entries = Math.min(entries, 1 << 30);
+
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        indexMask = (int) entries - 1;
+    }
+
+    /**
+     * Look up a position
+     * @param key Zobrist key of the position
+     * @return entry data, or NO_ENTRY if the position is not in the table
+     */
+    public long probe(long key){
+        int index = (int) key & indexMask;
+        long entry = data[index];
+        long check = keys[index];
+
+        if(entry != NO_ENTRY && (check ^ entry) == key){
+            hits.increment();
+            return entry;
+        }
+
+        misses.increment();
+        if(entry != NO_ENTRY){
+            collisions.increment();
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Store a search result, replacing the entry unless it holds a deeper
+     * result for the same position
+     * @param key Zobrist key of the position
+     * @param depth depth searched, 0 to 255
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param score score, fits in 16 bits signed
+     * @param move best move packed in 16 bits, or NO_MOVE
+     */
+    public void store(long key, int depth, int bound, int score, int move){
+        int index = (int) key & indexMask;
+        long old = data[index];
+
+        if((keys[index] ^ old) == key && depth(old) > depth){
+            return;
+        }
+
+        long entry = (move & 0xFFFFL) | (long) ((score + SCORE_OFFSET) & 0xFFFF) << 16 |
+            (long) (depth & 0xFF) << 32 | (long) bound << 40;
+
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    /**
+     * Get the best move of an entry
+     * @param entry entry data from probe
+     * @return move, or NO_MOVE
+     */
+    public static int move(long entry){
+        return (int) (entry & 0xFFFF);
+    }
+
+    /**
+     * Get the score of an entry
+     * @param entry entry data from probe
+     * @return score
+     */
+    public static int score(long entry){
+        return (int) (entry >>> 16 & 0xFFFF) - SCORE_OFFSET;
+    }
+
+    /**
+     * Get the depth of an entry
+     * @param entry entry data from probe
+     * @return depth searched
+     */
+    public static int depth(long entry){
+        return (int) (entry >>> 32 & 0xFF);
+    }
+
+    /**
+     * Get the bound type of an entry
+     * @param entry entry data from probe
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int bound(long entry){
+        return (int) (entry >>> 40 & 0x3);
+    }
+
+    /**
+     * Empty the table and reset the counters
+     */
+    public void clear(){
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Get the number of entries
+     * @return table capacity
+     */
+    public int getCapacity(){
+        return keys.length;
+    }
+
+    /**
+     * Get the number of probes that found the position
+     * @return hits
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of probes that did not find the position
+     * @return misses
+     */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of probes that found a different position in the entry
+     * @return collisions
+     */
+    public long getCollisions(){
+        return collisions.sum();
+    }
+
+    /**
+     * Get the fraction of probes that found the position
+     * @return hit rate from 0 to 1
+     */
+    public double getHitRate(){
+        long probes = getHits() + getMisses();
+        return probes == 0 ? 0 : (double) getHits() / probes;
+    }
+}